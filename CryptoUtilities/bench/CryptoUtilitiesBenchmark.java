@@ -0,0 +1,339 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * JMH benchmarks of the {@code CryptoUtilities} primitives, over operands of
+ * 64 to 4096 bits. Each operation is measured on the original
+ * {@code NaturalNumber2}-based implementation and on the faster backends
+ * where one exists. JMH rejects benchmarks in the default package, so
+ * {@code bench/run.sh CryptoUtilitiesBenchmark [file]} copies {@code src}
+ * and {@code bench} into a package, compiles them with the JMH annotation
+ * processor and runs {@code main}; results are written as JSON to the file
+ * named by the first argument (default {@code jmh-result.json}) so they can
+ * be compared across releases.
+ *
+ * @author Selin Kirbas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoUtilitiesBenchmark {
+
+    /**
+     * Number of exponentiations in the batch benchmarks.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Bit length of the operands.
+     */
+    @Param({ "64", "128", "256", "512", "1024", "2048", "4096" })
+    private int bits;
+
+    /**
+     * Random base, below the modulus.
+     */
+    private NaturalNumber base;
+
+    /**
+     * Random exponent of the same size as the modulus.
+     */
+    private NaturalNumber exponent;
+
+    /**
+     * Random odd modulus with its top bit set.
+     */
+    private NaturalNumber modulus;
+
+    /**
+     * Random bases, below the modulus, for the batch benchmarks.
+     */
+    private NaturalNumber[] batchBases;
+
+    /**
+     * The exponent, repeated for every base of the batch.
+     */
+    private NaturalNumber[] batchExponents;
+
+    /**
+     * A likely prime of the operand size.
+     */
+    private NaturalNumber prime;
+
+    /**
+     * Random starting point for next-prime searches.
+     */
+    private NaturalNumber start;
+
+    /**
+     * Empties the primality verdict caches before every invocation, so the
+     * benchmarks taking it time a full test rather than a cache lookup of
+     * the fixed operands.
+     */
+    @State(Scope.Thread)
+    public static class ColdCaches {
+
+        /**
+         * Clears the caches.
+         */
+        @Setup(Level.Invocation)
+        public void clear() {
+            CryptoUtilities.clearPrimalityCaches();
+        }
+
+    }
+
+    /**
+     * Returns a random odd number of exactly {@code bits} bits.
+     *
+     * @param sampler
+     *            source of random bits
+     * @param bits
+     *            bit length
+     * @return the number
+     */
+    private static NaturalNumber randomOdd(RandomNumberSampler sampler,
+            int bits) {
+        NaturalNumber low = new NaturalNumber2(2);
+        low.power(bits - 1);
+        NaturalNumber range = new NaturalNumber2(low);
+        range.decrement();
+        NaturalNumber n = CryptoUtilities.randomNumber(range, sampler);
+        n.add(low);
+        if (CryptoUtilities.isEven(n)) {
+            n.increment();
+        }
+        return n;
+    }
+
+    /**
+     * Draws the operands, from a fixed seed so every run and every release
+     * measures the same numbers.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final long seed = 20240601L;
+        RandomNumberSampler sampler = RandomNumberSampler.seeded(seed);
+        this.modulus = randomOdd(sampler, this.bits);
+        this.exponent = randomOdd(sampler, this.bits);
+        this.base = randomOdd(sampler, this.bits - 1);
+        this.start = randomOdd(sampler, this.bits);
+        this.prime = new NaturalNumber2(this.start);
+        CryptoUtilities.generateNextLikelyPrime(this.prime);
+        this.batchBases = new NaturalNumber[BATCH_SIZE];
+        this.batchExponents = new NaturalNumber[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            this.batchBases[i] = randomOdd(sampler, this.bits - 1);
+            this.batchExponents[i] = this.exponent;
+        }
+    }
+
+    /**
+     * Original recursive powerMod on {@code NaturalNumber2}.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber powerModNaturalNumber() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerModRecursive(n, this.exponent, this.modulus);
+        return n;
+    }
+
+    /**
+     * powerMod on the Montgomery engine, square-and-multiply.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber powerModMontgomeryBinary() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerMod(n, this.exponent, this.modulus, 1);
+        return n;
+    }
+
+    /**
+     * powerMod on the Montgomery engine with the default sliding window.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber powerModMontgomeryWindowed() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerMod(n, this.exponent, this.modulus);
+        return n;
+    }
+
+    /**
+     * powerMod called once per base of the batch; time is per
+     * exponentiation.
+     *
+     * @return the last result, so the loop is not optimized away
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public NaturalNumber powerModPerCall() {
+        NaturalNumber n = null;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            n = new NaturalNumber2(this.batchBases[i]);
+            CryptoUtilities.powerMod(n, this.batchExponents[i], this.modulus);
+        }
+        return n;
+    }
+
+    /**
+     * powerModBatch over the same batch on one thread, which shows the cost of
+     * the batch path against powerModPerCall; time is per exponentiation.
+     *
+     * @return the results, so they are not optimized away
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public NaturalNumber[] powerModBatchSequential() {
+        return CryptoUtilities.powerModBatch(this.batchBases,
+                this.batchExponents, this.modulus, 1);
+    }
+
+    /**
+     * powerModBatch over the same batch on every available processor; time
+     * is per exponentiation.
+     *
+     * @return the results, so they are not optimized away
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public NaturalNumber[] powerModBatchParallel() {
+        return CryptoUtilities.powerModBatch(this.batchBases,
+                this.batchExponents, this.modulus);
+    }
+
+    /**
+     * isPrime1 on a likely prime, with cold caches.
+     *
+     * @param cold
+     *            clears the verdict caches before the call
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean isPrime1(ColdCaches cold) {
+        return CryptoUtilities.isPrime1(this.prime);
+    }
+
+    /**
+     * isPrime2 on a likely prime, so every witness is tried, with cold
+     * caches.
+     *
+     * @param cold
+     *            clears the verdict caches before the call
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public boolean isPrime2(ColdCaches cold) {
+        return CryptoUtilities.isPrime2(this.prime);
+    }
+
+    /**
+     * reduceToGCD with Euclid's algorithm on {@code NaturalNumber2}.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber reduceToGCDEuclid() {
+        return this.gcd(CryptoUtilities.GcdStrategy.EUCLID);
+    }
+
+    /**
+     * reduceToGCD with the binary algorithm on limbs.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber reduceToGCDBinary() {
+        return this.gcd(CryptoUtilities.GcdStrategy.BINARY);
+    }
+
+    /**
+     * reduceToGCD with Lehmer's algorithm on limbs.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber reduceToGCDLehmer() {
+        return this.gcd(CryptoUtilities.GcdStrategy.LEHMER);
+    }
+
+    /**
+     * Returns the greatest common divisor of the modulus and exponent.
+     *
+     * @param strategy
+     *            algorithm to use
+     * @return the greatest common divisor
+     */
+    private NaturalNumber gcd(CryptoUtilities.GcdStrategy strategy) {
+        NaturalNumber n = new NaturalNumber2(this.modulus);
+        NaturalNumber m = new NaturalNumber2(this.exponent);
+        CryptoUtilities.reduceToGCD(n, m, strategy);
+        return n;
+    }
+
+    /**
+     * generateNextLikelyPrime from a fixed random starting point, with cold
+     * caches.
+     *
+     * @param cold
+     *            clears the verdict caches before the call
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber generateNextLikelyPrime(ColdCaches cold) {
+        NaturalNumber n = new NaturalNumber2(this.start);
+        CryptoUtilities.generateNextLikelyPrime(n);
+        return n;
+    }
+
+    /**
+     * Runs every benchmark in this class and writes the results as JSON.
+     *
+     * @param args
+     *            optional: name of the JSON result file
+     * @throws RunnerException
+     *             if JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = "jmh-result.json";
+        if (args.length > 0) {
+            resultFile = args[0];
+        }
+        Options options = new OptionsBuilder()
+                .include(CryptoUtilitiesBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON).result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+
+}
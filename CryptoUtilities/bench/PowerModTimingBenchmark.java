@@ -0,0 +1,192 @@
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * JMH harness checking that {@code CryptoUtilities.powerModConstantTime}
+ * takes the same time for every exponent of a given bit length, while
+ * {@code powerMod} (for contrast) does not. Each exponent shape has exactly
+ * {@code bits} bits: "sparse" is 2^(bits-1) + 1, "dense" is 2^bits - 1, and
+ * "random" has random bits below its top one. {@code main} runs every
+ * combination and reports, per bit length and method, the spread of the mean
+ * times across shapes, (max - min) / min; it exits with status 1 if the
+ * spread of the constant-time method exceeds the tolerance given as the
+ * first argument, in percent (default 2). Run it with
+ * {@code bench/run.sh PowerModTimingBenchmark [tolerance]}, which packages
+ * the sources as JMH requires and passes the exit status on.
+ *
+ * @author Selin Kirbas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class PowerModTimingBenchmark {
+
+    /**
+     * Default tolerance on the spread of the constant-time method, in
+     * percent.
+     */
+    private static final double DEFAULT_TOLERANCE_PERCENT = 2.0;
+
+    /**
+     * Bit length of the modulus and of the exponent.
+     */
+    @Param({ "1024", "2048" })
+    private int bits;
+
+    /**
+     * Shape of the exponent.
+     */
+    @Param({ "sparse", "dense", "random" })
+    private String shape;
+
+    /**
+     * Random base, below the modulus.
+     */
+    private NaturalNumber base;
+
+    /**
+     * Exponent of the chosen shape.
+     */
+    private NaturalNumber exponent;
+
+    /**
+     * Random odd modulus with its top bit set.
+     */
+    private NaturalNumber modulus;
+
+    /**
+     * Draws the operands, from a fixed seed so every shape is measured
+     * against the same base and modulus.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final long seed = 20240601L;
+        RandomNumberSampler sampler = RandomNumberSampler.seeded(seed);
+        NaturalNumber top = new NaturalNumber2(2);
+        top.power(this.bits - 1);
+        NaturalNumber range = new NaturalNumber2(top);
+        range.decrement();
+
+        this.modulus = CryptoUtilities.randomNumber(range, sampler);
+        this.modulus.add(top);
+        if (CryptoUtilities.isEven(this.modulus)) {
+            this.modulus.increment();
+        }
+        this.base = CryptoUtilities.randomNumber(range, sampler);
+
+        this.exponent = new NaturalNumber2(top);
+        if (this.shape.equals("sparse")) {
+            this.exponent.increment();
+        } else if (this.shape.equals("dense")) {
+            this.exponent.add(range);
+        } else {
+            this.exponent.add(CryptoUtilities.randomNumber(range, sampler));
+        }
+    }
+
+    /**
+     * powerModConstantTime.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber constantTime() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerModConstantTime(n, this.exponent, this.modulus);
+        return n;
+    }
+
+    /**
+     * powerMod, whose time depends on the exponent's bits.
+     *
+     * @return the result, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber variableTime() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerMod(n, this.exponent, this.modulus);
+        return n;
+    }
+
+    /**
+     * Runs every benchmark in this class and reports the spread of the mean
+     * times across exponent shapes.
+     *
+     * @param args
+     *            optional: tolerance on the constant-time spread, in percent
+     * @throws RunnerException
+     *             if JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        double tolerance = DEFAULT_TOLERANCE_PERCENT;
+        if (args.length > 0) {
+            tolerance = Double.parseDouble(args[0]);
+        }
+        Options options = new OptionsBuilder()
+                .include(PowerModTimingBenchmark.class.getSimpleName())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        //fastest and slowest mean time over the shapes, per bits and method
+        Map<String, double[]> ranges = new TreeMap<>();
+        for (RunResult r : results) {
+            String benchmark = r.getParams().getBenchmark();
+            String method = benchmark
+                    .substring(benchmark.lastIndexOf('.') + 1);
+            String key = r.getParams().getParam("bits") + " bits, " + method;
+            double score = r.getPrimaryResult().getScore();
+            double[] range = ranges.get(key);
+            if (range == null) {
+                ranges.put(key, new double[] { score, score });
+            } else {
+                range[0] = Math.min(range[0], score);
+                range[1] = Math.max(range[1], score);
+            }
+        }
+
+        boolean ok = true;
+        final double percent = 100.0;
+        for (Map.Entry<String, double[]> e : ranges.entrySet()) {
+            double[] range = e.getValue();
+            double spread = percent * (range[1] - range[0]) / range[0];
+            System.out.printf("%s: spread %.2f%% across exponent shapes%n",
+                    e.getKey(), spread);
+            if (e.getKey().endsWith("constantTime") && spread > tolerance) {
+                ok = false;
+            }
+        }
+        if (!ok) {
+            System.out.printf("constantTime spread exceeds %.2f%%%n",
+                    tolerance);
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+#!/bin/sh
+# Builds and runs one of the JMH benchmarks of CryptoUtilities.
+#
+# JMH rejects benchmarks in the default package, where this project keeps
+# its classes, so the sources of src and bench are copied into package
+# cryptobench under a scratch directory, compiled there with the JMH
+# annotation processor, and run from there.
+#
+# usage: bench/run.sh CLASS [ARG...]
+#   CLASS  CryptoUtilitiesBenchmark or PowerModTimingBenchmark
+#   ARG    passed on to the main method of CLASS
+#
+# environment:
+#   COMPONENTS  classpath of the OSU components (required)
+#   JMH         classpath of jmh-core, jmh-generator-annprocess,
+#               jopt-simple and commons-math3 (required)
+#   WORK        scratch directory (default: a new temporary directory)
+#
+# The exit status is that of the benchmark, so a PowerModTimingBenchmark
+# spread above its tolerance fails the script.
+
+set -e
+
+if [ $# -lt 1 ] || [ -z "$COMPONENTS" ] || [ -z "$JMH" ]; then
+    echo "usage: COMPONENTS=... JMH=... $0 CLASS [ARG...]" >&2
+    exit 2
+fi
+class=$1
+shift
+
+project=$(cd "$(dirname "$0")/.." && pwd)
+work=${WORK:-$(mktemp -d)}
+rm -rf "$work/src" "$work/classes"
+mkdir -p "$work/src/cryptobench" "$work/classes"
+
+for f in "$project"/src/*.java "$project"/bench/*.java; do
+    { echo "package cryptobench;"; cat "$f"; } \
+        > "$work/src/cryptobench/$(basename "$f")"
+done
+
+javac -nowarn -cp "$COMPONENTS:$JMH" \
+    -processor org.openjdk.jmh.generators.BenchmarkProcessor \
+    -d "$work/classes" "$work"/src/cryptobench/*.java
+
+exec java -cp "$work/classes:$COMPONENTS:$JMH" "cryptobench.$class" "$@"
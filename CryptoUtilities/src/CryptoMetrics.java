@@ -0,0 +1,452 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional instrumentation of {@code CryptoUtilities}: event counters and
+ * latency histograms, off by default. While disabled, each instrumented
+ * point costs one read of a volatile flag, with no clock reads, allocation
+ * or shared writes; in {@code CryptoUtilitiesBenchmark}, a build with the
+ * points removed was not measurably faster. While enabled, counters are
+ * {@code LongAdder}s and histograms are log-linear arrays of them, with
+ * {@code LongAccumulator}s for the extremes, so concurrent callers do not
+ * contend on a single location.
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class CryptoMetrics {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CryptoMetrics() {
+    }
+
+    /**
+     * Events counted.
+     */
+    public enum Counter {
+        /**
+         * Calls of powerMod and powerModConstantTime, and elements of
+         * powerModBatch.
+         */
+        POWER_MOD_CALLS,
+        /**
+         * Multi-precision multiplications: Montgomery products and
+         * {@code NaturalNumber} products made by powerMod.
+         */
+        MULTIPLICATIONS,
+        /**
+         * Multi-precision divisions: {@code NaturalNumber} divisions made by
+         * powerMod and Euclid's algorithm, and limb remainders.
+         */
+        DIVISIONS,
+        /**
+         * Random draws thrown away by randomNumber for exceeding the bound.
+         */
+        RANDOM_REJECTIONS,
+        /**
+         * Miller-Rabin rounds run by isPrime2.
+         */
+        WITNESS_ROUNDS,
+        /**
+         * isPrime1 and isPrime2 calls answered from the verdict cache.
+         */
+        CACHE_HITS,
+        /**
+         * Candidates of generateNextLikelyPrime skipped by the small-prime
+         * sieve.
+         */
+        SIEVE_REJECTIONS,
+        /**
+         * Numbers found composite by isPrime2's gcd with the primorial.
+         */
+        PRIMORIAL_REJECTIONS,
+        /**
+         * Candidates of generateNextLikelyPrime that passed the sieve but
+         * failed isPrime2.
+         */
+        PRIMALITY_REJECTIONS
+    }
+
+    /**
+     * Operations timed.
+     */
+    public enum Operation {
+        /**
+         * powerMod and powerModConstantTime.
+         */
+        POWER_MOD,
+        /**
+         * isPrime1.
+         */
+        IS_PRIME1,
+        /**
+         * isPrime2.
+         */
+        IS_PRIME2,
+        /**
+         * generateNextLikelyPrime.
+         */
+        GENERATE_NEXT_LIKELY_PRIME
+    }
+
+    /**
+     * Value of startTimer while disabled.
+     */
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    /**
+     * Whether events are being recorded.
+     */
+    private static volatile boolean enabled = false;
+
+    /**
+     * One adder per Counter, by ordinal.
+     */
+    private static final LongAdder[] COUNTERS = counters();
+
+    /**
+     * One histogram per Operation, by ordinal.
+     */
+    private static final LatencyHistogram[] HISTOGRAMS = histograms();
+
+    /**
+     * Returns a new adder for each Counter.
+     *
+     * @return the adders, by ordinal
+     */
+    private static LongAdder[] counters() {
+        LongAdder[] adders = new LongAdder[Counter.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Returns a new histogram for each Operation.
+     *
+     * @return the histograms, by ordinal
+     */
+    private static LatencyHistogram[] histograms() {
+        LatencyHistogram[] h = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < h.length; i++) {
+            h[i] = new LatencyHistogram();
+        }
+        return h;
+    }
+
+    /**
+     * Starts recording.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Stops recording; what was recorded so far is kept.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Reports whether events are being recorded.
+     *
+     * @return true iff recording
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets every counter to 0 and empties every histogram.
+     */
+    public static void reset() {
+        for (LongAdder c : COUNTERS) {
+            c.reset();
+        }
+        for (LatencyHistogram h : HISTOGRAMS) {
+            h.reset();
+        }
+    }
+
+    /**
+     * Returns a copy of every counter and histogram.
+     *
+     * @return the snapshot
+     */
+    public static Snapshot snapshot() {
+        Map<Counter, Long> counters = new EnumMap<>(Counter.class);
+        for (Counter c : Counter.values()) {
+            counters.put(c, COUNTERS[c.ordinal()].sum());
+        }
+        Map<Operation, HistogramSnapshot> histograms = new EnumMap<>(
+                Operation.class);
+        for (Operation op : Operation.values()) {
+            histograms.put(op, HISTOGRAMS[op.ordinal()].snapshot());
+        }
+        return new Snapshot(counters, histograms);
+    }
+
+    /**
+     * Counts one {@code counter} event, if recording.
+     *
+     * @param counter
+     *            the event
+     */
+    static void increment(Counter counter) {
+        if (enabled) {
+            COUNTERS[counter.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts {@code n} {@code counter} events, if recording.
+     *
+     * @param counter
+     *            the event
+     * @param n
+     *            number of events
+     */
+    static void add(Counter counter, long n) {
+        if (enabled) {
+            COUNTERS[counter.ordinal()].add(n);
+        }
+    }
+
+    /**
+     * Returns a start time to pass to stopTimer; reads the clock only if
+     * recording.
+     *
+     * @return the start time, or NOT_TIMED
+     */
+    static long startTimer() {
+        long start = NOT_TIMED;
+        if (enabled) {
+            start = System.nanoTime();
+        }
+        return start;
+    }
+
+    /**
+     * Records the time elapsed since {@code start} for {@code operation},
+     * unless start came from a call to startTimer made while not recording.
+     *
+     * @param operation
+     *            the operation
+     * @param start
+     *            value returned by startTimer
+     */
+    static void stopTimer(Operation operation, long start) {
+        if (start != NOT_TIMED) {
+            HISTOGRAMS[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Immutable copy of every counter and histogram.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Value of each counter.
+         */
+        private final Map<Counter, Long> counters;
+
+        /**
+         * Histogram of each operation.
+         */
+        private final Map<Operation, HistogramSnapshot> histograms;
+
+        /**
+         * Constructs the snapshot.
+         *
+         * @param counters
+         *            value of each counter
+         * @param histograms
+         *            histogram of each operation
+         */
+        private Snapshot(Map<Counter, Long> counters,
+                Map<Operation, HistogramSnapshot> histograms) {
+            this.counters = counters;
+            this.histograms = histograms;
+        }
+
+        /**
+         * Returns the value of {@code counter}.
+         *
+         * @param counter
+         *            the counter
+         * @return number of events counted
+         */
+        public long count(Counter counter) {
+            return this.counters.get(counter);
+        }
+
+        /**
+         * Returns the latency histogram of {@code operation}.
+         *
+         * @param operation
+         *            the operation
+         * @return its histogram, in nanoseconds
+         */
+        public HistogramSnapshot latency(Operation operation) {
+            return this.histograms.get(operation);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<Counter, Long> e : this.counters.entrySet()) {
+                sb.append(e.getKey()).append(": ").append(e.getValue())
+                        .append('\n');
+            }
+            for (Map.Entry<Operation, HistogramSnapshot> e : this.histograms
+                    .entrySet()) {
+                sb.append(e.getKey()).append(": ").append(e.getValue())
+                        .append('\n');
+            }
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * Immutable copy of a latency histogram; values are in nanoseconds.
+     */
+    public static final class HistogramSnapshot {
+
+        /**
+         * Number of values in each bucket.
+         */
+        private final long[] counts;
+
+        /**
+         * Number of values recorded.
+         */
+        private final long total;
+
+        /**
+         * Sum of the values recorded.
+         */
+        private final long sum;
+
+        /**
+         * Smallest value recorded.
+         */
+        private final long min;
+
+        /**
+         * Largest value recorded.
+         */
+        private final long max;
+
+        /**
+         * Constructs the snapshot.
+         *
+         * @param counts
+         *            number of values in each bucket; taken over
+         * @param sum
+         *            sum of the values
+         * @param min
+         *            smallest value, or Long.MAX_VALUE if none
+         * @param max
+         *            largest value, or 0 if none
+         */
+        HistogramSnapshot(long[] counts, long sum, long min, long max) {
+            this.counts = counts;
+            long n = 0;
+            for (long c : counts) {
+                n += c;
+            }
+            this.total = n;
+            this.sum = sum;
+            this.min = Math.min(min, max);
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of values recorded.
+         *
+         * @return the count
+         */
+        public long count() {
+            return this.total;
+        }
+
+        /**
+         * Returns the smallest value recorded, or 0 if none.
+         *
+         * @return the minimum
+         */
+        public long min() {
+            return this.min;
+        }
+
+        /**
+         * Returns the largest value recorded, or 0 if none.
+         *
+         * @return the maximum
+         */
+        public long max() {
+            return this.max;
+        }
+
+        /**
+         * Returns the mean of the values recorded, or 0 if none.
+         *
+         * @return the mean
+         */
+        public double mean() {
+            double mean = 0;
+            if (this.total > 0) {
+                mean = (double) this.sum / this.total;
+            }
+            return mean;
+        }
+
+        /**
+         * Returns a value at least as large as {@code percentile} percent of
+         * the values recorded and within 1/32 of the smallest such value.
+         *
+         * @param percentile
+         *            the percentile
+         * @return the value at that percentile, or 0 if none were recorded
+         * @requires 0 <= percentile <= 100
+         */
+        public long valueAtPercentile(double percentile) {
+            assert 0 <= percentile
+                    && percentile <= 100 : "Violation of: 0 <= p <= 100";
+            final double hundred = 100.0;
+            long wanted = Math.max(1,
+                    (long) Math.ceil(percentile / hundred * this.total));
+            long value = 0;
+            long seen = 0;
+            for (int i = 0; i < this.counts.length
+                    && seen < wanted && this.total > 0; i++) {
+                seen += this.counts[i];
+                if (seen >= wanted) {
+                    value = Math.min(LatencyHistogram.highestValueIn(i),
+                            this.max);
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            final double p50 = 50;
+            final double p99 = 99;
+            return "count=" + this.total + " min=" + this.min + "ns mean="
+                    + Math.round(this.mean()) + "ns p50="
+                    + this.valueAtPercentile(p50) + "ns p99="
+                    + this.valueAtPercentile(p99) + "ns max=" + this.max
+                    + "ns";
+        }
+
+    }
+
+}
@@ -1,467 +1,1493 @@
-import components.naturalnumber.NaturalNumber;
-import components.naturalnumber.NaturalNumber2;
-import components.random.Random;
-import components.random.Random1L;
-import components.simplereader.SimpleReader;
-import components.simplereader.SimpleReader1L;
-import components.simplewriter.SimpleWriter;
-import components.simplewriter.SimpleWriter1L;
-
-/**
- * Utilities that could be used with RSA cryptosystems.
- *
- * @author Selin Kirbas
- *
- */
-public final class CryptoUtilities {
-
-    /**
-     * Private constructor so this utility class cannot be instantiated.
-     */
-    private CryptoUtilities() {
-    }
-
-    /**
-     * Useful constant, not a magic number: 3.
-     */
-    private static final int THREE = 3;
-
-    /**
-     * Pseudo-random number generator.
-     */
-    private static final Random GENERATOR = new Random1L();
-
-    /**
-     * Returns a random number uniformly distributed in the interval [0, n].
-     *
-     * @param n
-     *            top end of interval
-     * @return random number in interval
-     * @requires n > 0
-     * @ensures <pre>
-     * randomNumber = [a random number uniformly distributed in [0, n]]
-     * </pre>
-     */
-    public static NaturalNumber randomNumber(NaturalNumber n) {
-        assert !n.isZero() : "Violation of: n > 0";
-        final int base = 10;
-        NaturalNumber result;
-        int d = n.divideBy10();
-        if (n.isZero()) {
-            /*
-             * Incoming n has only one digit and it is d, so generate a random
-             * number uniformly distributed in [0, d]
-             */
-            int x = (int) ((d + 1) * GENERATOR.nextDouble());
-            result = new NaturalNumber2(x);
-            n.multiplyBy10(d);
-        } else {
-            /*
-             * Incoming n has more than one digit, so generate a random number
-             * (NaturalNumber) uniformly distributed in [0, n], and another
-             * (int) uniformly distributed in [0, 9] (i.e., a random digit)
-             */
-            result = randomNumber(n);
-            int lastDigit = (int) (base * GENERATOR.nextDouble());
-            result.multiplyBy10(lastDigit);
-            n.multiplyBy10(d);
-            if (result.compareTo(n) > 0) {
-                /*
-                 * In this case, we need to try again because generated number
-                 * is greater than n; the recursive call's argument is not
-                 * "smaller" than the incoming value of n, but this recursive
-                 * call has no more than a 90% chance of being made (and for
-                 * large n, far less than that), so the probability of
-                 * termination is 1
-                 */
-                result = randomNumber(n);
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Finds the greatest common divisor of n and m.
-     *
-     * @param n
-     *            one number
-     * @param m
-     *            the other number
-     * @updates n
-     * @clears m
-     * @ensures n = [greatest common divisor of #n and #m]
-     */
-    public static void reduceToGCD(NaturalNumber n, NaturalNumber m) {
-        if (!m.isZero()) {
-            //get n mod m value
-            NaturalNumber mod = new NaturalNumber2(n.divide(m));
-
-            //get n mod m value from r for method call
-            n.copyFrom(mod);
-
-            //GCD of n & m = GCD(m, n mod m)
-            reduceToGCD(m, n);
-
-            //fulfill conditions in contract
-            //update n & ensure n is equal to GCD of #n and #m & clear m
-            n.transferFrom(m);
-        }
-    }
-
-    /**
-     * Reports whether n is even.
-     *
-     * @param n
-     *            the number to be checked
-     * @return true iff n is even
-     * @ensures isEven = (n mod 2 = 0)
-     */
-    public static boolean isEven(NaturalNumber n) {
-        //set up boolean return variable
-        boolean result = false;
-
-        //create variable to divide n by
-        NaturalNumber two = new NaturalNumber2(2);
-
-        //create a variable to store n value so n isn't altered after divide method call
-        NaturalNumber temp = new NaturalNumber2(n);
-
-        //check if remainder of n divided by 2 is equal to 0
-        if (temp.divide(two).isZero()) {
-            result = true;
-        }
-
-        return result;
-    }
-
-    /**
-     * Updates n to its p-th power modulo m.
-     *
-     * @param n
-     *            number to be raised to a power
-     * @param p
-     *            the power
-     * @param m
-     *            the modulus
-     * @updates n
-     * @requires m > 1
-     * @ensures n = #n ^ (p) mod m
-     */
-    public static void powerMod(NaturalNumber n, NaturalNumber p,
-            NaturalNumber m) {
-        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
-
-        //variable to copy if p is zero since anything to 0 is 1
-        NaturalNumber one = new NaturalNumber2(1);
-
-        NaturalNumber pTemp = new NaturalNumber2(p);
-        NaturalNumber two = new NaturalNumber2(2);
-
-        if (p.isZero()) {
-            n.transferFrom(one); //x^0 = 1
-        } else if (isEven(p)) { //check if p is even
-            //if even, use (n^p/2 mod m)^2 mod m
-            pTemp.divide(two);
-
-            powerMod(n, pTemp, m);
-
-            //store n value to square
-            NaturalNumber nTemp = new NaturalNumber2(n);
-
-            //square n^p/2 mod m
-            n.multiply(nTemp);
-
-            NaturalNumber mod = n.divide(m);
-
-            n.copyFrom(mod);
-        } else { //use ((n^p-1/2 mod m)^2 * ([initial]n mod m)) mod m
-            //calculate p - 1/2 for method call
-            pTemp.decrement();
-            pTemp.divide(two);
-
-            //create variable to store initial n value
-            NaturalNumber nTemp1 = new NaturalNumber2(n);
-
-            powerMod(n, pTemp, m);
-
-            //store n value after calling method (aka n^p-1/2 mod m)
-            NaturalNumber nTemp2 = new NaturalNumber2(n);
-
-            //square n^p-1/2 mod m
-            n.multiply(nTemp2);
-
-            n.copyFrom(n.divide(m));
-
-            //create new variable for initial n value mod m
-            NaturalNumber mod = new NaturalNumber2(nTemp1.divide(m));
-
-            //(n^p-1/2 mod m)^2 * ([initial]n mod m)
-            mod.multiply(n);
-
-            //previous equation mod m
-            n.copyFrom(mod.divide(m));
-        }
-    }
-
-    /**
-     * Reports whether w is a "witness" that n is composite, in the sense that
-     * either it is a square root of 1 (mod n), or it fails to satisfy the
-     * criterion for primality from Fermat's theorem.
-     *
-     * @param w
-     *            witness candidate
-     * @param n
-     *            number being checked
-     * @return true iff w is a "witness" that n is composite
-     * @requires n > 2 and 1 < w < n - 1
-     * @ensures <pre>
-     * isWitnessToCompositeness =
-     *     (w ^ 2 mod n = 1)  or  (w ^ (n-1) mod n /= 1)
-     * </pre>
-     */
-    public static boolean isWitnessToCompositeness(NaturalNumber w,
-            NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(2)) > 0 : "Violation of: n > 2";
-        assert (new NaturalNumber2(1)).compareTo(w) < 0 : "Violation of: 1 < w";
-        n.decrement();
-        assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
-        n.increment();
-
-        //set up boolean return variable
-        boolean result = false;
-
-        //create variable to square with powerMod method
-        NaturalNumber two = new NaturalNumber2(2);
-
-        //create variable to use for comparison to ensure condition
-        //w is a "witness" if it is equal to one (after using powerMod method)
-        NaturalNumber one = new NaturalNumber2(1);
-
-        //create variable to store value of w
-        NaturalNumber wTemp = new NaturalNumber2(w);
-
-        //call powerMod method to calculate w^2 mod n
-        powerMod(w, two, n);
-
-        //check if w^2 mod n is equal to 1
-        if (w.compareTo(one) == 0) {
-            result = true; //if equal, then w is a witness
-        }
-
-        //check next condition
-
-        //create variable to store value of n to prevent n value from changing
-        NaturalNumber nTemp = new NaturalNumber2(n);
-
-        //use tempN variable to create n-1 for condition
-        nTemp.decrement();
-
-        //call powerMod method to calculate w^(n-1) mod n
-        powerMod(w, nTemp, n);
-
-        //check if w^(n-1) mod n is not equal to 1
-        if (w.compareTo(one) != 0) {
-            result = true; //if equal, then w is a witness
-        }
-
-        //transfer original value back to w
-        w.transferFrom(wTemp);
-
-        return result;
-    }
-
-    /**
-     * Reports whether n is a prime; may be wrong with "low" probability.
-     *
-     * @param n
-     *            number to be checked
-     * @return true means n is very likely prime; false means n is definitely
-     *         composite
-     * @requires n > 1
-     * @ensures <pre>
-     * isPrime1 = [n is a prime number, with small probability of error
-     *         if it is reported to be prime, and no chance of error if it is
-     *         reported to be composite]
-     * </pre>
-     */
-    public static boolean isPrime1(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
-        boolean isPrime;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
-            /*
-             * 2 and 3 are primes
-             */
-            isPrime = true;
-        } else if (isEven(n)) {
-            /*
-             * evens are composite
-             */
-            isPrime = false;
-        } else {
-            /*
-             * odd n >= 5: simply check whether 2 is a witness that n is
-             * composite (which works surprisingly well :-)
-             */
-            isPrime = !isWitnessToCompositeness(new NaturalNumber2(2), n);
-        }
-        return isPrime;
-    }
-
-    /**
-     * Reports whether n is a prime; may be wrong with "low" probability.
-     *
-     * @param n
-     *            number to be checked
-     * @return true means n is very likely prime; false means n is definitely
-     *         composite
-     * @requires n > 1
-     * @ensures <pre>
-     * isPrime2 = [n is a prime number, with small probability of error
-     *         if it is reported to be prime, and no chance of error if it is
-     *         reported to be composite]
-     * </pre>
-     */
-    public static boolean isPrime2(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
-
-        //set up boolean return variable
-        boolean result = true;
-
-        final int fifty = 50;
-
-        //variable for comparison
-        NaturalNumber one = new NaturalNumber2(1);
-
-        NaturalNumber temp = new NaturalNumber2(n);
-
-        //set up n-1 variable
-        temp.decrement();
-
-        //create loop to generate 50 witness candidates
-        for (int i = 0; i < fifty; i++) {
-            //generate random numbers in the interval
-            NaturalNumber random = randomNumber(temp);
-
-            /*
-             * Due to the preconditions of isWitnessToCompositeness, we need to
-             * make sure that random (or w) is NOT less than or equal to 1 since
-             * it needs to be more than 1 (1 < w). We also need to check if
-             * random/w is more than or equal to n - 1 (temp) since the
-             * condition states w < n - 1. If random/w will violate these
-             * conditions, then we keep looping until random is a number that
-             * satisfies the conditions before we call the method.
-             */
-            while (random.compareTo(one) <= 0 || random.compareTo(temp) >= 0) {
-                random = randomNumber(n);
-            }
-
-            //check if any of the 50 generated candidates witness n being composite
-            if (isWitnessToCompositeness(random, n)) {
-                result = false;
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Generates a likely prime number at least as large as some given number.
-     *
-     * @param n
-     *            minimum value of likely prime
-     * @updates n
-     * @requires n > 1
-     * @ensures n >= #n and [n is very likely a prime number]
-     */
-    public static void generateNextLikelyPrime(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
-
-        //set up variable for while loop
-        boolean result = false;
-        while (!result) {
-            //check if n is even since even numbers can't be prime (divisible by 2)
-            if (isEven(n)) {
-                n.increment(); //increment once to make number odd
-            } else {
-                //check numbers starting at n and increase through odd numbers
-                //(increment twice to make sure number is odd)
-                n.increment();
-                n.increment();
-            }
-            //check if isPrime2 is true to break loop
-            if (isPrime2(n)) {
-                result = true;
-            }
-
-        }
-    }
-
-    /**
-     * Main method.
-     *
-     * @param args
-     *            the command line arguments
-     */
-    public static void main(String[] args) {
-        SimpleReader in = new SimpleReader1L();
-        SimpleWriter out = new SimpleWriter1L();
-
-        /*
-         * Sanity check of randomNumber method -- just so everyone can see how
-         * it might be "tested"
-         */
-        final int testValue = 17;
-        final int testSamples = 100000;
-        NaturalNumber test = new NaturalNumber2(testValue);
-        int[] count = new int[testValue + 1];
-        for (int i = 0; i < count.length; i++) {
-            count[i] = 0;
-        }
-        for (int i = 0; i < testSamples; i++) {
-            NaturalNumber rn = randomNumber(test);
-            assert rn.compareTo(test) <= 0 : "Help!";
-            count[rn.toInt()]++;
-        }
-        for (int i = 0; i < count.length; i++) {
-            out.println("count[" + i + "] = " + count[i]);
-        }
-        out.println("  expected value = "
-                + (double) testSamples / (double) (testValue + 1));
-
-        /*
-         * Check user-supplied numbers for primality, and if a number is not
-         * prime, find the next likely prime after it
-         */
-        while (true) {
-            out.print("n = ");
-            NaturalNumber n = new NaturalNumber2(in.nextLine());
-            if (n.compareTo(new NaturalNumber2(2)) < 0) {
-                out.println("Bye!");
-                break;
-            } else {
-                if (isPrime1(n)) {
-                    out.println(n + " is probably a prime number"
-                            + " according to isPrime1.");
-                } else {
-                    out.println(n + " is a composite number"
-                            + " according to isPrime1.");
-                }
-                if (isPrime2(n)) {
-                    out.println(n + " is probably a prime number"
-                            + " according to isPrime2.");
-                } else {
-                    out.println(n + " is a composite number"
-                            + " according to isPrime2.");
-                    generateNextLikelyPrime(n);
-                    out.println("  next likely prime is " + n);
-                }
-            }
-        }
-
-        /*
-         * Close input and output streams
-         */
-        in.close();
-        out.close();
-    }
-
-}
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Utilities that could be used with RSA cryptosystems.
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class CryptoUtilities {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CryptoUtilities() {
+    }
+
+    /**
+     * Algorithms available to reduceToGCD.
+     */
+    public enum GcdStrategy {
+        /**
+         * Euclid's algorithm on {@code NaturalNumber}.
+         */
+        EUCLID,
+        /**
+         * Stein's binary algorithm on 64-bit limbs.
+         */
+        BINARY,
+        /**
+         * Lehmer's algorithm on 64-bit limbs, simulating Euclid's steps on
+         * the leading bits.
+         */
+        LEHMER
+    }
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Pseudo-random number generator; draws from each calling thread's own
+     * generator, so it is safe to share.
+     */
+    private static final RandomNumberSampler GENERATOR = RandomNumberSampler
+            .threadLocal();
+
+    /**
+     * Bound on the probability that isPrime2 reports a composite to be prime:
+     * 2^-50, i.e., 25 Miller-Rabin rounds.
+     */
+    static final double DEFAULT_ERROR_PROBABILITY = 0x1p-50;
+
+    /**
+     * Each Miller-Rabin round lets a composite through with probability at
+     * most 1/4.
+     */
+    private static final double ROUND_ERROR_BOUND = 0.25;
+
+    /**
+     * Number of recent verdicts kept by each of isPrime1 and isPrime2.
+     */
+    private static final int PRIMALITY_CACHE_SIZE = 1024;
+
+    /**
+     * Recent verdicts of isPrime1 on numbers of 2^64 and up.
+     */
+    private static final PrimalityCache PRIME1_VERDICTS = new PrimalityCache(
+            PRIMALITY_CACHE_SIZE);
+
+    /**
+     * Recent verdicts of isPrime2 on numbers of 2^64 and up.
+     */
+    private static final PrimalityCache PRIME2_VERDICTS = new PrimalityCache(
+            PRIMALITY_CACHE_SIZE);
+
+    /**
+     * Odd moduli with at least this many decimal digits are handled by the
+     * Montgomery engine; below it, converting to limbs costs more than it
+     * saves.
+     */
+    private static final int MONTGOMERY_MIN_DIGITS = 20;
+
+    /**
+     * Number of chunks per worker thread that powerModBatch splits a batch
+     * into.
+     */
+    private static final int BATCH_CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Public exponent of generated RSA keys: 65537 = 2^16 + 1.
+     */
+    private static final int RSA_PUBLIC_EXPONENT = 65537;
+
+    /**
+     * Smallest supported RSA modulus size in bits, so that each prime factor
+     * is at least PrimeGenerationPipeline.MIN_BITS long.
+     */
+    public static final int RSA_MIN_BITS = 2 * PrimeGenerationPipeline.MIN_BITS;
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n].
+     *
+     * @param n
+     *            top end of interval
+     * @return random number in interval
+     * @requires n > 0
+     * @ensures <pre>
+     * randomNumber = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public static NaturalNumber randomNumber(NaturalNumber n) {
+        assert !n.isZero() : "Violation of: n > 0";
+
+        return GENERATOR.randomNumber(n);
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n],
+     * drawn from {@code source}.
+     *
+     * @param n
+     *            top end of interval
+     * @param source
+     *            source of random bits
+     * @return random number in interval
+     * @requires n > 0
+     * @ensures <pre>
+     * randomNumber = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public static NaturalNumber randomNumber(NaturalNumber n,
+            RandomNumberSampler source) {
+        assert !n.isZero() : "Violation of: n > 0";
+        assert source != null : "Violation of: source is not null";
+
+        return source.randomNumber(n);
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m.
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    public static void reduceToGCD(NaturalNumber n, NaturalNumber m) {
+        //GCD of n & m = GCD(m, n mod m), applied until m is zero; a loop
+        //rather than recursion, since the number of steps grows with the
+        //number of digits
+        while (!m.isZero()) {
+            //get n mod m value; n itself becomes the quotient
+            NaturalNumber mod = n.divide(m);
+            CryptoMetrics.increment(CryptoMetrics.Counter.DIVISIONS);
+
+            //(n, m) becomes (m, n mod m)
+            n.transferFrom(m);
+            m.transferFrom(mod);
+        }
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m using the given algorithm.
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @param strategy
+     *            algorithm to use
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    public static void reduceToGCD(NaturalNumber n, NaturalNumber m,
+            GcdStrategy strategy) {
+        assert strategy != null : "Violation of: strategy is not null";
+
+        if (strategy == GcdStrategy.EUCLID) {
+            reduceToGCD(n, m);
+        } else {
+            long[] a = Limbs.fromNaturalNumber(n);
+            long[] b = Limbs.fromNaturalNumber(m);
+            long[] gcd;
+            if (strategy == GcdStrategy.BINARY) {
+                gcd = LimbGcd.binaryGcd(a, b);
+            } else {
+                gcd = LimbGcd.lehmerGcd(a, b);
+            }
+            Limbs.setNaturalNumber(n, gcd);
+            m.clear();
+        }
+    }
+
+    /**
+     * Returns the inverse of a modulo m, found with the extended Euclidean
+     * algorithm; e.g., the RSA private exponent is modInverse(e, phi).
+     *
+     * @param a
+     *            number to invert
+     * @param m
+     *            the modulus
+     * @return the inverse of a modulo m
+     * @requires m > 1 and [a and m have greatest common divisor 1]
+     * @ensures 0 < modInverse < m and a * modInverse mod m = 1
+     */
+    public static NaturalNumber modInverse(NaturalNumber a, NaturalNumber m) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+
+        /*
+         * Euclid on (r0, r1) = (m, a mod m) while tracking t with
+         * t * a = r (mod m); the signed Bezout coefficients are kept reduced
+         * modulo m so they stay natural numbers
+         */
+        NaturalNumber r0 = new NaturalNumber2(m);
+        NaturalNumber aCopy = new NaturalNumber2(a);
+        NaturalNumber r1 = aCopy.divide(m);
+        NaturalNumber t0 = new NaturalNumber2(0);
+        NaturalNumber t1 = new NaturalNumber2(1);
+        while (!r1.isZero()) {
+            //r0 becomes the quotient q, rem the next remainder
+            NaturalNumber rem = r0.divide(r1);
+
+            //t2 = t0 - q * t1 (mod m)
+            r0.multiply(t1);
+            NaturalNumber qt = r0.divide(m);
+            NaturalNumber t2 = new NaturalNumber2(t0);
+            if (t2.compareTo(qt) < 0) {
+                t2.add(m);
+            }
+            t2.subtract(qt);
+
+            r0.transferFrom(r1);
+            r1.transferFrom(rem);
+            t0.transferFrom(t1);
+            t1.transferFrom(t2);
+        }
+        assert r0.compareTo(new NaturalNumber2(1)) == 0 : ""
+                + "Violation of: a and m have greatest common divisor 1";
+
+        return t0;
+    }
+
+    /**
+     * Reports whether n is even.
+     *
+     * @param n
+     *            the number to be checked
+     * @return true iff n is even
+     * @ensures isEven = (n mod 2 = 0)
+     */
+    public static boolean isEven(NaturalNumber n) {
+        //peel the last digit off a copy, so n is never changed, not even
+        //briefly while another thread may be reading it
+        NaturalNumber temp = new NaturalNumber2(n);
+
+        return temp.divideBy10() % 2 == 0;
+    }
+
+    /**
+     * Updates n to its p-th power modulo m.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1
+     * @ensures n = #n ^ (p) mod m
+     */
+    public static void powerMod(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+
+        long start = CryptoMetrics.startTimer();
+        CryptoMetrics.increment(CryptoMetrics.Counter.POWER_MOD_CALLS);
+        if (m.toString().length() >= MONTGOMERY_MIN_DIGITS && !isEven(m)) {
+            powerModMontgomery(n, p, m, 0);
+        } else {
+            powerModRecursive(n, p, m);
+        }
+        CryptoMetrics.stopTimer(CryptoMetrics.Operation.POWER_MOD, start);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, using sliding-window
+     * exponentiation with windows of {@code windowBits} bits when m is large
+     * and odd. Odd powers of the base are cached per (base, modulus), so
+     * repeated calls with the same base and modulus skip building them.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @param windowBits
+     *            window width; 1 gives plain square-and-multiply
+     * @updates n
+     * @requires m > 1 and 1 <= windowBits <= 6
+     * @ensures n = #n ^ (p) mod m
+     */
+    public static void powerMod(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m, int windowBits) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+        assert 1 <= windowBits
+                && windowBits <= MontgomeryContext.MAX_WINDOW : ""
+                        + "Violation of: 1 <= windowBits <= 6";
+
+        long start = CryptoMetrics.startTimer();
+        CryptoMetrics.increment(CryptoMetrics.Counter.POWER_MOD_CALLS);
+        if (m.toString().length() >= MONTGOMERY_MIN_DIGITS && !isEven(m)) {
+            powerModMontgomery(n, p, m, windowBits);
+        } else {
+            powerModRecursive(n, p, m);
+        }
+        CryptoMetrics.stopTimer(CryptoMetrics.Operation.POWER_MOD, start);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m in time that does not depend on
+     * the bits of p, for secret exponents such as an RSA private exponent.
+     * powerMod skips work for zero bits of p and so leaks them through its
+     * running time; this method does the same sequence of Montgomery
+     * multiplications and table reads for every exponent of a given limb
+     * count. Only the exponentiation itself is constant-time: converting n,
+     * p and m between {@code NaturalNumber} and limbs at either end is not.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1 and m is odd
+     * @ensures n = #n ^ (p) mod m
+     */
+    public static void powerModConstantTime(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+        assert !isEven(m) : "Violation of: m is odd";
+
+        long start = CryptoMetrics.startTimer();
+        CryptoMetrics.increment(CryptoMetrics.Counter.POWER_MOD_CALLS);
+        long[] modulus = Limbs.fromNaturalNumber(m);
+        MontgomeryContext context = MontgomeryContext.forModulus(modulus);
+        long[] base = context.pad(
+                Limbs.remainder(Limbs.fromNaturalNumber(n), modulus));
+        Limbs.setNaturalNumber(n, context.modPowConstantTime(base,
+                Limbs.fromNaturalNumber(p)));
+        CryptoMetrics.stopTimer(CryptoMetrics.Operation.POWER_MOD, start);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m using Montgomery multiplication on
+     * 64-bit limbs.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @param windowBits
+     *            window width, or 0 to pick one from the size of p
+     * @updates n
+     * @requires m > 1 and m is odd and 0 <= windowBits <= 6
+     * @ensures n = #n ^ (p) mod m
+     */
+    private static void powerModMontgomery(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m, int windowBits) {
+        //reduce the base once up front; every later reduction is Montgomery's
+        long[] base = Limbs.fromNaturalNumber(n.divide(m));
+        long[] exponent = Limbs.fromNaturalNumber(p);
+        MontgomeryContext context = MontgomeryContext
+                .forModulus(Limbs.fromNaturalNumber(m));
+
+        long[] result;
+        if (windowBits == 0) {
+            result = context.modPow(base, exponent);
+        } else {
+            result = context.modPow(base, exponent, windowBits);
+        }
+        Limbs.setNaturalNumber(n, result);
+    }
+
+    /**
+     * Updates n to its p-th power modulo m by recursive squaring on
+     * {@code NaturalNumber}. Package-private so benchmarks can compare it
+     * with the Montgomery engine.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1
+     * @ensures n = #n ^ (p) mod m
+     */
+    static void powerModRecursive(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m) {
+        //variable to copy if p is zero since anything to 0 is 1
+        NaturalNumber one = new NaturalNumber2(1);
+
+        NaturalNumber pTemp = new NaturalNumber2(p);
+        NaturalNumber two = new NaturalNumber2(2);
+
+        if (p.isZero()) {
+            n.transferFrom(one); //x^0 = 1
+        } else if (isEven(p)) { //check if p is even
+            //if even, use (n^p/2 mod m)^2 mod m
+            pTemp.divide(two);
+
+            powerModRecursive(n, pTemp, m);
+
+            //store n value to square
+            NaturalNumber nTemp = new NaturalNumber2(n);
+
+            //square n^p/2 mod m
+            n.multiply(nTemp);
+
+            NaturalNumber mod = n.divide(m);
+
+            n.copyFrom(mod);
+
+            //one product and two divisions at this level
+            CryptoMetrics.increment(CryptoMetrics.Counter.MULTIPLICATIONS);
+            CryptoMetrics.add(CryptoMetrics.Counter.DIVISIONS, 2);
+        } else { //use ((n^p-1/2 mod m)^2 * ([initial]n mod m)) mod m
+            //calculate p - 1/2 for method call
+            pTemp.decrement();
+            pTemp.divide(two);
+
+            //create variable to store initial n value
+            NaturalNumber nTemp1 = new NaturalNumber2(n);
+
+            powerModRecursive(n, pTemp, m);
+
+            //store n value after calling method (aka n^p-1/2 mod m)
+            NaturalNumber nTemp2 = new NaturalNumber2(n);
+
+            //square n^p-1/2 mod m
+            n.multiply(nTemp2);
+
+            n.copyFrom(n.divide(m));
+
+            //create new variable for initial n value mod m
+            NaturalNumber mod = new NaturalNumber2(nTemp1.divide(m));
+
+            //(n^p-1/2 mod m)^2 * ([initial]n mod m)
+            mod.multiply(n);
+
+            //previous equation mod m
+            n.copyFrom(mod.divide(m));
+
+            //two products and four divisions at this level
+            CryptoMetrics.add(CryptoMetrics.Counter.MULTIPLICATIONS, 2);
+            CryptoMetrics.add(CryptoMetrics.Counter.DIVISIONS, 2 + 2);
+        }
+    }
+
+    /**
+     * Returns bases[i] raised to exponents[i] modulo m, for every i, using all
+     * available processors; see the four-argument version.
+     *
+     * @param bases
+     *            numbers to be raised to powers
+     * @param exponents
+     *            the powers
+     * @param m
+     *            the modulus shared by the whole batch
+     * @return the results, in the order of the inputs
+     * @requires m > 1 and |bases| = |exponents|
+     * @ensures <pre>
+     * |powerModBatch| = |bases|  and
+     * for all i  (powerModBatch[i] = bases[i] ^ (exponents[i]) mod m)
+     * </pre>
+     */
+    public static NaturalNumber[] powerModBatch(NaturalNumber[] bases,
+            NaturalNumber[] exponents, NaturalNumber m) {
+        return powerModBatch(bases, exponents, m,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns bases[i] raised to exponents[i] modulo m, for every i. The batch
+     * is split into contiguous chunks evaluated on {@code parallelism}
+     * threads; the inputs are not changed. For odd m the Montgomery context
+     * is looked up once for the whole batch, but powerMod already shares it
+     * across calls through the context cache, so on one thread this is no
+     * faster than calling powerMod for each element.
+     *
+     * @param bases
+     *            numbers to be raised to powers
+     * @param exponents
+     *            the powers
+     * @param m
+     *            the modulus shared by the whole batch
+     * @param parallelism
+     *            number of worker threads
+     * @return the results, in the order of the inputs
+     * @requires m > 1 and |bases| = |exponents| and parallelism > 0
+     * @ensures <pre>
+     * |powerModBatch| = |bases|  and
+     * for all i  (powerModBatch[i] = bases[i] ^ (exponents[i]) mod m)
+     * </pre>
+     */
+    public static NaturalNumber[] powerModBatch(NaturalNumber[] bases,
+            NaturalNumber[] exponents, NaturalNumber m, int parallelism) {
+        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+        assert bases.length == exponents.length : ""
+                + "Violation of: |bases| = |exponents|";
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        CryptoMetrics.add(CryptoMetrics.Counter.POWER_MOD_CALLS, bases.length);
+        long[] modulus = Limbs.fromNaturalNumber(m);
+        MontgomeryContext context = null;
+        if (!isEven(m)) {
+            context = MontgomeryContext.forModulus(modulus);
+        }
+        NaturalNumber[] results = new NaturalNumber[bases.length];
+
+        //a few chunks per thread, so a thread that finishes early can take
+        //another instead of waiting on the slowest
+        int chunks = Math.min(bases.length,
+                BATCH_CHUNKS_PER_THREAD * parallelism);
+        if (parallelism == 1 || chunks <= 1) {
+            powerModChunk(bases, exponents, m, context, results, 0,
+                    bases.length);
+        } else {
+            int chunkSize = (bases.length + chunks - 1) / chunks;
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<Future<?>> pending = new ArrayList<>();
+                for (int from = 0; from < bases.length; from += chunkSize) {
+                    int start = from;
+                    int end = Math.min(from + chunkSize, bases.length);
+                    MontgomeryContext shared = context;
+                    pending.add(pool.submit(() -> powerModChunk(bases,
+                            exponents, m, shared, results, start, end)));
+                }
+                for (Future<?> f : pending) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while exponentiating a batch", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(
+                        "Batch exponentiation failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sets results[i] to bases[i] raised to exponents[i] modulo m, for every
+     * i in [from, to).
+     *
+     * @param bases
+     *            numbers to be raised to powers
+     * @param exponents
+     *            the powers
+     * @param m
+     *            the modulus
+     * @param context
+     *            Montgomery context for m, or null if m is even
+     * @param results
+     *            where the results go
+     * @param from
+     *            first index of the chunk
+     * @param to
+     *            index just past the chunk
+     * @updates results
+     * @requires m > 1 and 0 <= from <= to <= |bases|
+     */
+    private static void powerModChunk(NaturalNumber[] bases,
+            NaturalNumber[] exponents, NaturalNumber m,
+            MontgomeryContext context, NaturalNumber[] results, int from,
+            int to) {
+        long[] modulus = null;
+        if (context != null) {
+            modulus = Limbs.fromNaturalNumber(m);
+        }
+        for (int i = from; i < to; i++) {
+            NaturalNumber result = new NaturalNumber2(bases[i]);
+            if (context != null) {
+                long[] base = context.pad(Limbs.remainder(
+                        Limbs.fromNaturalNumber(bases[i]), modulus));
+                Limbs.setNaturalNumber(result, context.modPowUncached(base,
+                        Limbs.fromNaturalNumber(exponents[i])));
+            } else {
+                powerModRecursive(result, exponents[i], m);
+            }
+            results[i] = result;
+        }
+    }
+
+    /**
+     * Reports whether w is a "witness" that n is composite, in the sense that
+     * either it is a square root of 1 (mod n), or it fails to satisfy the
+     * criterion for primality from Fermat's theorem.
+     *
+     * @param w
+     *            witness candidate
+     * @param n
+     *            number being checked
+     * @return true iff w is a "witness" that n is composite
+     * @requires n > 2 and 1 < w < n - 1
+     * @ensures <pre>
+     * isWitnessToCompositeness =
+     *     (w ^ 2 mod n = 1)  or  (w ^ (n-1) mod n /= 1)
+     * </pre>
+     */
+    public static boolean isWitnessToCompositeness(NaturalNumber w,
+            NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(2)) > 0 : "Violation of: n > 2";
+        assert (new NaturalNumber2(1)).compareTo(w) < 0 : "Violation of: 1 < w";
+        n.decrement();
+        assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
+        n.increment();
+
+        //set up boolean return variable
+        boolean result = false;
+
+        //create variable to square with powerMod method
+        NaturalNumber two = new NaturalNumber2(2);
+
+        //create variable to use for comparison to ensure condition
+        //w is a "witness" if it is equal to one (after using powerMod method)
+        NaturalNumber one = new NaturalNumber2(1);
+
+        //create variable to store value of w
+        NaturalNumber wTemp = new NaturalNumber2(w);
+
+        //call powerMod method to calculate w^2 mod n
+        powerMod(w, two, n);
+
+        //check if w^2 mod n is equal to 1
+        if (w.compareTo(one) == 0) {
+            result = true; //if equal, then w is a witness
+        }
+
+        //check next condition
+
+        //create variable to store value of n to prevent n value from changing
+        NaturalNumber nTemp = new NaturalNumber2(n);
+
+        //use tempN variable to create n-1 for condition
+        nTemp.decrement();
+
+        //call powerMod method to calculate w^(n-1) mod n
+        powerMod(w, nTemp, n);
+
+        //check if w^(n-1) mod n is not equal to 1
+        if (w.compareTo(one) != 0) {
+            result = true; //if equal, then w is a witness
+        }
+
+        //transfer original value back to w
+        w.transferFrom(wTemp);
+
+        return result;
+    }
+
+    /**
+     * Reports whether w is a strong witness that n is composite, i.e., whether
+     * n fails the Miller-Rabin test to base w. Writing n - 1 = 2^s * d with d
+     * odd, w^d mod n is computed once and then squared at most s - 1 times,
+     * which costs about as much as the single power w^(n-1) mod n made by
+     * isWitnessToCompositeness. At most a quarter of the candidates are not
+     * strong witnesses for an odd composite n.
+     *
+     * @param w
+     *            witness candidate
+     * @param n
+     *            number being checked
+     * @return true iff w is a strong witness that n is composite
+     * @requires n > 3 and n is odd and 1 < w < n - 1
+     * @ensures <pre>
+     * isStrongWitnessToCompositeness =
+     *     (w ^ d mod n /= 1)  and
+     *     (for all j: 0 <= j < s  (w ^ (2^j * d) mod n /= n - 1))
+     *   where n - 1 = 2^s * d and d is odd
+     * </pre>
+     */
+    public static boolean isStrongWitnessToCompositeness(NaturalNumber w,
+            NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(THREE)) > 0 : ""
+                + "Violation of: n > 3";
+        assert !isEven(n) : "Violation of: n is odd";
+        assert (new NaturalNumber2(1)).compareTo(w) < 0 : "Violation of: 1 < w";
+        //compare against a copy, so n is not changed while it may be shared
+        NaturalNumber nMinusOne = new NaturalNumber2(n);
+        nMinusOne.decrement();
+        assert w.compareTo(nMinusOne) < 0 : "Violation of: w < n - 1";
+
+        MontgomeryContext context = MontgomeryContext
+                .forModulus(Limbs.fromNaturalNumber(n));
+        long[] witness = context.pad(Limbs.fromNaturalNumber(w));
+        return context.isStrongWitness(witness);
+    }
+
+    /**
+     * Returns the number of Miller-Rabin rounds needed so that the chance of
+     * a composite passing all of them is at most {@code errorProbability}.
+     *
+     * @param errorProbability
+     *            bound on the probability of reporting a composite as prime
+     * @return number of rounds
+     * @requires 0 < errorProbability < 1
+     * @ensures <pre>
+     * roundsForErrorProbability =
+     *     max(1, [smallest r such that (1/4)^r <= errorProbability])
+     * </pre>
+     */
+    public static int roundsForErrorProbability(double errorProbability) {
+        assert 0 < errorProbability
+                && errorProbability < 1 : "Violation of: 0 < p < 1";
+        int rounds = (int) Math.ceil(
+                Math.log(errorProbability) / Math.log(ROUND_ERROR_BOUND));
+        return Math.max(1, rounds);
+    }
+
+    /**
+     * Reports whether the number with decimal representation {@code digits}
+     * is below 2^64.
+     *
+     * @param digits
+     *            decimal representation of a natural number
+     * @return true iff the number fits in an unsigned long
+     */
+    private static boolean fitsInLong(String digits) {
+        final String maxUnsignedLong = "18446744073709551615";
+        return digits.length() < maxUnsignedLong.length()
+                || (digits.length() == maxUnsignedLong.length()
+                        && digits.compareTo(maxUnsignedLong) <= 0);
+    }
+
+    /**
+     * Forgets every verdict cached by isPrime1 and isPrime2, so the next
+     * call on any number does the full test; for benchmarks of cold calls.
+     */
+    static void clearPrimalityCaches() {
+        PRIME1_VERDICTS.clear();
+        PRIME2_VERDICTS.clear();
+    }
+
+    /**
+     * Reports whether n, read as an unsigned 64-bit number, is a prime. Uses
+     * Miller-Rabin with a fixed set of witnesses known to be exact below
+     * 2^64, so the answer is never wrong and nothing is allocated.
+     *
+     * @param n
+     *            number to be checked, read as unsigned
+     * @return true iff n is a prime
+     * @ensures isPrime64 = [n is a prime number]
+     */
+    public static boolean isPrime64(long n) {
+        return MillerRabin64.isPrime(n);
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime1 = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime1(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        long start = CryptoMetrics.startTimer();
+        boolean isPrime;
+        String digits = n.toString();
+        if (fitsInLong(digits)) {
+            /*
+             * n < 2^64: exact answer without leaving primitive arithmetic
+             */
+            isPrime = MillerRabin64.isPrime(Long.parseUnsignedLong(digits));
+        } else if (isEven(n)) {
+            /*
+             * evens are composite
+             */
+            isPrime = false;
+        } else {
+            /*
+             * odd n >= 2^64: simply check whether 2 is a witness that n is
+             * composite (which works surprisingly well :-), unless a recent
+             * call already did
+             */
+            Boolean cached = PRIME1_VERDICTS.lookup(digits, 1);
+            if (cached != null) {
+                CryptoMetrics.increment(CryptoMetrics.Counter.CACHE_HITS);
+                isPrime = cached;
+            } else {
+                isPrime = !isWitnessToCompositeness(new NaturalNumber2(2), n);
+                PRIME1_VERDICTS.record(digits, isPrime, 1);
+            }
+        }
+        CryptoMetrics.stopTimer(CryptoMetrics.Operation.IS_PRIME1, start);
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        return isPrime2(n, DEFAULT_ERROR_PROBABILITY);
+    }
+
+    /**
+     * Reports whether n is a prime by Miller-Rabin with random witnesses,
+     * running as many rounds as it takes to report a composite as prime with
+     * probability at most {@code errorProbability}.
+     *
+     * @param n
+     *            number to be checked
+     * @param errorProbability
+     *            bound on the probability of reporting a composite as prime
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and 0 < errorProbability < 1
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability at most
+     *         errorProbability of error if it is reported to be prime, and no
+     *         chance of error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, double errorProbability) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert 0 < errorProbability
+                && errorProbability < 1 : "Violation of: 0 < p < 1";
+
+        long start = CryptoMetrics.startTimer();
+        boolean result = isPrime2Untimed(n, errorProbability);
+        CryptoMetrics.stopTimer(CryptoMetrics.Operation.IS_PRIME2, start);
+        return result;
+    }
+
+    /**
+     * Carries out isPrime2(n, errorProbability), counting its events but
+     * leaving its timing to the caller.
+     *
+     * @param n
+     *            number to be checked
+     * @param errorProbability
+     *            bound on the probability of reporting a composite as prime
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and 0 < errorProbability < 1
+     */
+    private static boolean isPrime2Untimed(NaturalNumber n,
+            double errorProbability) {
+        boolean result;
+        String digits = n.toString();
+        if (fitsInLong(digits)) {
+            /*
+             * n < 2^64: exact answer without leaving primitive arithmetic
+             */
+            result = MillerRabin64.isPrime(Long.parseUnsignedLong(digits));
+        } else {
+            /*
+             * a recent verdict at least as strong as asked for settles it;
+             * otherwise run the rounds and remember the verdict
+             */
+            int rounds = roundsForErrorProbability(errorProbability);
+            Boolean cached = PRIME2_VERDICTS.lookup(digits, rounds);
+            if (cached != null) {
+                CryptoMetrics.increment(CryptoMetrics.Counter.CACHE_HITS);
+                result = cached;
+            } else {
+                result = millerRabin(n, rounds);
+                PRIME2_VERDICTS.record(digits, result, rounds);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n survives trial division by the odd primes below 2^15
+     * and {@code rounds} rounds of Miller-Rabin with random witnesses.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of witnesses to try
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n >= 2^64 and rounds > 0
+     */
+    private static boolean millerRabin(NaturalNumber n, int rounds) {
+        //set up boolean return variable; evens are composite
+        boolean result = !isEven(n);
+
+        //one gcd with the product of the odd primes below 2^15 rejects n if
+        //it has any of them as a factor
+        if (result && PrimorialTable.between(THREE, SmallPrimeSieve.LIMIT)
+                .sharesFactorWith(Limbs.fromNaturalNumber(n))) {
+            CryptoMetrics.increment(CryptoMetrics.Counter.PRIMORIAL_REJECTIONS);
+            result = false;
+        }
+
+        if (result) {
+            result = survivesWitnessRounds(n, rounds);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n survives {@code rounds} rounds of Miller-Rabin with
+     * random witnesses, and nothing else: no trial division and no cached
+     * verdicts. It suits callers that have already removed the small factors
+     * and seldom see the same number twice.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of witnesses to try
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 3 and n is odd and rounds > 0
+     */
+    static boolean survivesWitnessRounds(NaturalNumber n, int rounds) {
+        assert n.compareTo(new NaturalNumber2(THREE)) > 0 : ""
+                + "Violation of: n > 3";
+        assert rounds > 0 : "Violation of: rounds > 0";
+
+        boolean result = true;
+
+        //witness w is 2 + [a random number uniformly distributed in [0, n - 4]]
+        NaturalNumber top = new NaturalNumber2(n);
+        top.subtract(new NaturalNumber2(2 + 2));
+        NaturalNumber two = new NaturalNumber2(2);
+
+        //try fresh witnesses, stopping as soon as one proves n composite
+        for (int i = 0; i < rounds && result; i++) {
+            NaturalNumber w = randomNumber(top);
+            w.add(two);
+            CryptoMetrics.increment(CryptoMetrics.Counter.WITNESS_ROUNDS);
+            if (isStrongWitnessToCompositeness(w, n)) {
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability. Makes
+     * the same check as isPrime2, but evaluates the witnesses concurrently on
+     * {@code parallelism} threads and stops handing out witnesses as soon as
+     * one proves n composite. The witnesses are drawn from a generator seeded
+     * with {@code seed}, so the outcome does not depend on scheduling.
+     *
+     * @param n
+     *            number to be checked
+     * @param parallelism
+     *            number of worker threads
+     * @param seed
+     *            seed for choosing the witnesses
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and parallelism > 0
+     * @ensures <pre>
+     * isPrime2Parallel = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2Parallel(NaturalNumber n, int parallelism,
+            long seed) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        boolean result;
+        String digits = n.toString();
+        if (fitsInLong(digits)) {
+            /*
+             * n < 2^64: exact answer without leaving primitive arithmetic
+             * (which also covers 2 and 3, for which there are no witness
+             * candidates 1 < w < n - 1)
+             */
+            result = MillerRabin64.isPrime(Long.parseUnsignedLong(digits));
+        } else if (isEven(n)) {
+            /*
+             * evens are composite
+             */
+            result = false;
+        } else {
+            /*
+             * draw every witness up front so the set checked depends only on
+             * seed
+             */
+            NaturalNumber[] witnesses = randomWitnesses(n,
+                    roundsForErrorProbability(DEFAULT_ERROR_PROBABILITY),
+                    RandomNumberSampler.seeded(seed));
+            result = !hasStrongWitness(n, witnesses, parallelism);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether any of {@code witnesses} is a strong witness to the
+     * compositeness of n, checking them concurrently on {@code parallelism}
+     * threads and cancelling the rest as soon as one is found.
+     *
+     * @param n
+     *            number to be checked
+     * @param witnesses
+     *            the witness candidates
+     * @param parallelism
+     *            number of worker threads
+     * @return true iff some w in witnesses is a strong witness for n
+     * @throws IllegalStateException
+     *             if interrupted, or if a witness check fails
+     * @requires <pre>
+     * n is odd  and  n > 3  and  parallelism > 0  and
+     * for all w in witnesses  (1 < w < n - 1)
+     * </pre>
+     */
+    private static boolean hasStrongWitness(NaturalNumber n,
+            NaturalNumber[] witnesses, int parallelism) {
+        AtomicBoolean composite = new AtomicBoolean(false);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            CompletionService<Boolean> done = new ExecutorCompletionService<>(
+                    pool);
+            List<Future<Boolean>> pending = new ArrayList<>();
+            for (NaturalNumber w : witnesses) {
+                pending.add(done.submit(() -> {
+                    boolean isWitness = false;
+                    if (!composite.get()) {
+                        isWitness = isStrongWitnessToCompositeness(w, n);
+                        if (isWitness) {
+                            composite.set(true);
+                        }
+                    }
+                    return isWitness;
+                }));
+            }
+            for (int i = 0; i < pending.size() && !composite.get(); i++) {
+                done.take().get();
+            }
+            for (Future<Boolean> f : pending) {
+                f.cancel(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while testing " + n,
+                    e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Witness check failed for " + n,
+                    e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return composite.get();
+    }
+
+    /**
+     * Returns {@code count} witness candidates for n, each uniformly
+     * distributed in the interval [2, n - 2].
+     *
+     * @param n
+     *            number to be checked
+     * @param count
+     *            number of witnesses
+     * @param source
+     *            source of random bits
+     * @return the witness candidates
+     * @requires n > 3 and count >= 0
+     * @ensures <pre>
+     * for all w in randomWitnesses  (1 < w < n - 1)
+     * </pre>
+     */
+    private static NaturalNumber[] randomWitnesses(NaturalNumber n, int count,
+            RandomNumberSampler source) {
+        //witness w is 2 + [a random number uniformly distributed in [0, n - 4]]
+        NaturalNumber top = new NaturalNumber2(n);
+        top.subtract(new NaturalNumber2(2 + 2));
+        NaturalNumber two = new NaturalNumber2(2);
+
+        NaturalNumber[] witnesses = new NaturalNumber[count];
+        for (int i = 0; i < count; i++) {
+            witnesses[i] = source.randomNumber(top);
+            witnesses[i].add(two);
+        }
+        return witnesses;
+    }
+
+    /**
+     * Generates a likely prime number at least as large as some given number.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @updates n
+     * @requires n > 1
+     * @ensures n >= #n and [n is very likely a prime number]
+     */
+    public static void generateNextLikelyPrime(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        long start = CryptoMetrics.startTimer();
+
+        //set up variable for while loop
+        boolean result = false;
+
+        //move to the first candidate: the next odd number after n
+        if (isEven(n)) {
+            n.increment();
+        } else {
+            n.increment();
+            n.increment();
+        }
+
+        //once every candidate is above the largest sieving prime, a small
+        //factor proves a candidate composite, so only sieve survivors need
+        //the full probabilistic test
+        NaturalNumber sieveBound = new NaturalNumber2(
+                SmallPrimeSieve.largestPrime());
+        if (n.compareTo(sieveBound) > 0) {
+            SmallPrimeSieve sieve = new SmallPrimeSieve(
+                    Limbs.fromNaturalNumber(n));
+            int skipped = 0;
+            while (!result) {
+                while (sieve.hasSmallFactor()) {
+                    CryptoMetrics.increment(
+                            CryptoMetrics.Counter.SIEVE_REJECTIONS);
+                    sieve.advance();
+                    skipped += 2;
+                }
+                n.add(new NaturalNumber2(skipped));
+                if (isPrime2(n)) {
+                    result = true;
+                } else {
+                    CryptoMetrics.increment(
+                            CryptoMetrics.Counter.PRIMALITY_REJECTIONS);
+                    sieve.advance();
+                    skipped = 2;
+                }
+            }
+        }
+
+        while (!result) {
+            //check if isPrime2 is true to break loop
+            if (isPrime2(n)) {
+                result = true;
+            } else {
+                CryptoMetrics.increment(
+                        CryptoMetrics.Counter.PRIMALITY_REJECTIONS);
+                //increment twice to stay on odd numbers
+                n.increment();
+                n.increment();
+            }
+        }
+        CryptoMetrics.stopTimer(
+                CryptoMetrics.Operation.GENERATE_NEXT_LIKELY_PRIME, start);
+    }
+
+    /**
+     * Generates {@code count} random likely primes of exactly
+     * {@code bitLength} bits, using a {@code PrimeGenerationPipeline} with one
+     * worker per available processor for each filtering stage.
+     *
+     * @param bitLength
+     *            number of bits of each prime
+     * @param count
+     *            number of primes wanted
+     * @return the primes
+     * @throws IllegalStateException
+     *             if interrupted, or if a pipeline worker fails
+     * @requires bitLength >= 16 and count >= 0
+     * @ensures <pre>
+     * |generatePrimes| = count  and
+     * for all p in generatePrimes
+     *   (2^(bitLength-1) <= p < 2^bitLength  and
+     *    [p is very likely a prime number])
+     * </pre>
+     */
+    public static NaturalNumber[] generatePrimes(int bitLength, int count) {
+        assert bitLength >= PrimeGenerationPipeline.MIN_BITS : ""
+                + "Violation of: bitLength >= 16";
+        assert count >= 0 : "Violation of: count >= 0";
+
+        return new PrimeGenerationPipeline(bitLength).generate(count);
+    }
+
+    /**
+     * Returns the number of primes below {@code limit}, by a segmented sieve
+     * run on every available processor; see SegmentedSieve.
+     *
+     * @param limit
+     *            exclusive upper bound
+     * @return |{p prime : p < limit}|
+     * @requires 0 <= limit <= SegmentedSieve.MAX_LIMIT
+     */
+    public static long countPrimesBelow(long limit) {
+        return SegmentedSieve.countPrimesBelow(limit);
+    }
+
+    /**
+     * Returns an iterator over the primes below {@code limit}, in increasing
+     * order, sieving one cache-sized segment at a time; see SegmentedSieve.
+     *
+     * @param limit
+     *            exclusive upper bound
+     * @return iterator over {p prime : p < limit}
+     * @requires 0 <= limit <= SegmentedSieve.MAX_LIMIT
+     */
+    public static PrimitiveIterator.OfLong primesBelow(long limit) {
+        return SegmentedSieve.primesBelow(limit);
+    }
+
+    /**
+     * Generates an RSA key pair whose modulus has exactly {@code bitLength}
+     * bits, with public exponent 65537 and random bits drawn from a
+     * {@code SecureRandom}.
+     *
+     * @param bitLength
+     *            number of bits in the modulus
+     * @return the key pair
+     * @requires bitLength >= RSA_MIN_BITS
+     * @ensures <pre>
+     * 2^(bitLength-1) <= generateRsaKeyPair.modulus < 2^bitLength  and
+     * generateRsaKeyPair.publicExponent = 65537
+     * </pre>
+     */
+    public static RsaKeyPair generateRsaKeyPair(int bitLength) {
+        return generateRsaKeyPair(bitLength, RandomNumberSampler.secure());
+    }
+
+    /**
+     * Generates an RSA key pair whose modulus has exactly {@code bitLength}
+     * bits, with public exponent 65537 and random bits drawn from
+     * {@code source}.
+     *
+     * @param bitLength
+     *            number of bits in the modulus
+     * @param source
+     *            source of random bits
+     * @return the key pair
+     * @requires bitLength >= RSA_MIN_BITS
+     * @ensures <pre>
+     * 2^(bitLength-1) <= generateRsaKeyPair.modulus < 2^bitLength  and
+     * generateRsaKeyPair.publicExponent = 65537
+     * </pre>
+     */
+    public static RsaKeyPair generateRsaKeyPair(int bitLength,
+            RandomNumberSampler source) {
+        assert bitLength >= RSA_MIN_BITS : ""
+                + "Violation of: bitLength >= RSA_MIN_BITS";
+
+        NaturalNumber e = new NaturalNumber2(RSA_PUBLIC_EXPONENT);
+        int pBits = (bitLength + 1) / 2;
+        NaturalNumber p = rsaPrime(pBits, e, source);
+        NaturalNumber q = rsaPrime(bitLength - pBits, e, source);
+        while (q.compareTo(p) == 0) {
+            q = rsaPrime(bitLength - pBits, e, source);
+        }
+        return new RsaKeyPair(p, q, e);
+    }
+
+    /**
+     * Returns a likely prime p of exactly {@code bits} bits whose top two
+     * bits are set, with p - 1 relatively prime to e. Setting the top two bits
+     * of both factors makes their product exactly as long as their lengths
+     * add up to.
+     *
+     * @param bits
+     *            number of bits in the prime
+     * @param e
+     *            the public exponent
+     * @param source
+     *            source of random bits
+     * @return the prime
+     * @requires bits >= PrimeGenerationPipeline.MIN_BITS and e is prime
+     * @ensures <pre>
+     * 3 * 2^(bits-2) <= rsaPrime < 2^bits  and
+     * [rsaPrime is very likely a prime number]  and
+     * [rsaPrime - 1 and e have greatest common divisor 1]
+     * </pre>
+     */
+    private static NaturalNumber rsaPrime(int bits, NaturalNumber e,
+            RandomNumberSampler source) {
+        NaturalNumber quarter = new NaturalNumber2(2);
+        quarter.power(bits - 2);
+        NaturalNumber low = new NaturalNumber2(quarter);
+        low.multiply(new NaturalNumber2(THREE));
+        NaturalNumber high = new NaturalNumber2(quarter);
+        high.multiply(new NaturalNumber2(2 + 2));
+        NaturalNumber range = new NaturalNumber2(quarter);
+        range.decrement();
+
+        NaturalNumber p = null;
+        boolean found = false;
+        while (!found) {
+            //start at a random number in [3 * 2^(bits-2), 2^bits) and take
+            //the next likely prime, unless it runs past 2^bits
+            p = source.randomNumber(range);
+            p.add(low);
+            generateNextLikelyPrime(p);
+            if (p.compareTo(high) < 0) {
+                //e is prime, so gcd(p - 1, e) = 1 iff e does not divide p - 1
+                NaturalNumber pMinusOne = new NaturalNumber2(p);
+                pMinusOne.decrement();
+                NaturalNumber eCopy = new NaturalNumber2(e);
+                reduceToGCD(pMinusOne, eCopy);
+                found = pMinusOne.compareTo(new NaturalNumber2(1)) == 0;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Encrypts (or verifies) {@code message} with the public key of
+     * {@code key}.
+     *
+     * @param message
+     *            the message
+     * @param key
+     *            the key pair
+     * @updates message
+     * @requires message < key.modulus
+     * @ensures message = #message ^ (key.publicExponent) mod key.modulus
+     */
+    public static void rsaEncrypt(NaturalNumber message, RsaKeyPair key) {
+        assert message.compareTo(key.modulus()) < 0 : ""
+                + "Violation of: message < key.modulus";
+
+        powerMod(message, key.publicExponent(), key.modulus());
+    }
+
+    /**
+     * Decrypts (or signs) {@code cipher} with the private key of {@code key}.
+     * Uses the Chinese Remainder Theorem: the exponentiation is done modulo p
+     * and modulo q with exponents d mod (p - 1) and d mod (q - 1), each about
+     * an eighth of the work of one full-size powerMod, and the two halves are
+     * recombined with Garner's formula
+     * m = m2 + q * (q^(-1) * (m1 - m2) mod p). Both exponentiations use
+     * powerModConstantTime, so their timing does not reveal dP or dQ.
+     *
+     * @param cipher
+     *            the ciphertext
+     * @param key
+     *            the key pair
+     * @updates cipher
+     * @requires cipher < key.modulus
+     * @ensures cipher = #cipher ^ (key.privateExponent) mod key.modulus
+     */
+    public static void rsaDecrypt(NaturalNumber cipher, RsaKeyPair key) {
+        assert cipher.compareTo(key.modulus()) < 0 : ""
+                + "Violation of: cipher < key.modulus";
+
+        NaturalNumber p = key.p();
+        NaturalNumber q = key.q();
+
+        //m1 = cipher ^ dP mod p and m2 = cipher ^ dQ mod q
+        NaturalNumber m1 = new NaturalNumber2(cipher).divide(p);
+        powerModConstantTime(m1, key.dP(), p);
+        NaturalNumber m2 = new NaturalNumber2(cipher).divide(q);
+        powerModConstantTime(m2, key.dQ(), q);
+
+        //h = q^(-1) * (m1 - m2) mod p, keeping the difference natural
+        NaturalNumber m2ModP = new NaturalNumber2(m2).divide(p);
+        NaturalNumber h = m1;
+        if (h.compareTo(m2ModP) < 0) {
+            h.add(p);
+        }
+        h.subtract(m2ModP);
+        h.multiply(key.qInverse());
+        h = h.divide(p);
+
+        //cipher = m2 + q * h, which is below p * q
+        h.multiply(q);
+        h.add(m2);
+        cipher.transferFrom(h);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+
+        /*
+         * Sanity check of randomNumber method -- just so everyone can see how
+         * it might be "tested"
+         */
+        final int testValue = 17;
+        final int testSamples = 100000;
+        NaturalNumber test = new NaturalNumber2(testValue);
+        int[] count = new int[testValue + 1];
+        for (int i = 0; i < count.length; i++) {
+            count[i] = 0;
+        }
+        for (int i = 0; i < testSamples; i++) {
+            NaturalNumber rn = randomNumber(test);
+            assert rn.compareTo(test) <= 0 : "Help!";
+            count[rn.toInt()]++;
+        }
+        for (int i = 0; i < count.length; i++) {
+            out.println("count[" + i + "] = " + count[i]);
+        }
+        out.println("  expected value = "
+                + (double) testSamples / (double) (testValue + 1));
+
+        /*
+         * Check user-supplied numbers for primality, and if a number is not
+         * prime, find the next likely prime after it
+         */
+        while (true) {
+            out.print("n = ");
+            NaturalNumber n = new NaturalNumber2(in.nextLine());
+            if (n.compareTo(new NaturalNumber2(2)) < 0) {
+                out.println("Bye!");
+                break;
+            } else {
+                if (isPrime1(n)) {
+                    out.println(n + " is probably a prime number"
+                            + " according to isPrime1.");
+                } else {
+                    out.println(n + " is a composite number"
+                            + " according to isPrime1.");
+                }
+                if (isPrime2(n)) {
+                    out.println(n + " is probably a prime number"
+                            + " according to isPrime2.");
+                } else {
+                    out.println(n + " is a composite number"
+                            + " according to isPrime2.");
+                    generateNextLikelyPrime(n);
+                    out.println("  next likely prime is " + n);
+                }
+            }
+        }
+
+        /*
+         * Close input and output streams
+         */
+        in.close();
+        out.close();
+    }
+
+}
@@ -0,0 +1,153 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of nonnegative values (latencies in nanoseconds) with
+ * HDR-style log-linear buckets: values below 2^SUB_BITS get a bucket each,
+ * and every power-of-two range above that is split into 2^SUB_BITS equal
+ * buckets, so any recorded value is known to within 1/32 of itself while the
+ * whole range of a long takes under two thousand counters. Every counter,
+ * and the minimum and maximum, is striped across cells on contention, so
+ * concurrent recorders do not all update one location.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class LatencyHistogram {
+
+    /**
+     * log2 of the number of buckets per power-of-two range.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Number of buckets per power-of-two range.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Number of bits in a long.
+     */
+    private static final int LONG_BITS = 64;
+
+    /**
+     * Total number of buckets, enough for every nonnegative long.
+     */
+    static final int BUCKETS = (LONG_BITS - SUB_BITS) * SUB_BUCKETS;
+
+    /**
+     * Number of values recorded in each bucket.
+     */
+    private final LongAdder[] counts = adders();
+
+    /**
+     * Sum of the values recorded.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Smallest value recorded, or Long.MAX_VALUE if none.
+     */
+    private final LongAccumulator min = new LongAccumulator(Math::min,
+            Long.MAX_VALUE);
+
+    /**
+     * Largest value recorded, or 0 if none.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Returns one fresh adder per bucket.
+     *
+     * @return the adders
+     */
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Returns the index of the bucket holding {@code value}.
+     *
+     * @param value
+     *            the value
+     * @return its bucket
+     * @requires value >= 0
+     */
+    static int bucketOf(long value) {
+        int index;
+        if (value < SUB_BUCKETS) {
+            index = (int) value;
+        } else {
+            int e = LONG_BITS - 1 - Long.numberOfLeadingZeros(value);
+            int top = (int) (value >>> (e - SUB_BITS));
+            index = (e - SUB_BITS + 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the largest value that falls in bucket {@code index}.
+     *
+     * @param index
+     *            the bucket
+     * @return the largest value in it
+     * @requires 0 <= index < BUCKETS
+     */
+    static long highestValueIn(int index) {
+        long highest;
+        if (index < SUB_BUCKETS) {
+            highest = index;
+        } else {
+            int e = index / SUB_BUCKETS + SUB_BITS - 1;
+            long top = SUB_BUCKETS + index % SUB_BUCKETS;
+            highest = ((top + 1) << (e - SUB_BITS)) - 1;
+        }
+        return highest;
+    }
+
+    /**
+     * Records {@code value}.
+     *
+     * @param value
+     *            the value; negative values are recorded as 0
+     */
+    void record(long value) {
+        long v = Math.max(value, 0);
+        this.counts[bucketOf(v)].increment();
+        this.sum.add(v);
+        this.min.accumulate(v);
+        this.max.accumulate(v);
+    }
+
+    /**
+     * Forgets every value recorded so far.
+     */
+    void reset() {
+        for (LongAdder c : this.counts) {
+            c.reset();
+        }
+        this.sum.reset();
+        this.min.reset();
+        this.max.reset();
+    }
+
+    /**
+     * Returns a copy of the current state. Values recorded while the copy is
+     * being taken may or may not be in it.
+     *
+     * @return the copy
+     */
+    CryptoMetrics.HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = this.counts[i].sum();
+        }
+        return new CryptoMetrics.HistogramSnapshot(copy, this.sum.sum(),
+                this.min.get(), this.max.get());
+    }
+
+}
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * Iterative greatest-common-divisor algorithms on 64-bit limbs.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class LimbGcd {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private LimbGcd() {
+    }
+
+    /**
+     * Number of leading bits Lehmer's algorithm works with; small enough that
+     * the leading parts plus their cofactors never overflow a signed long.
+     */
+    private static final int LEHMER_BITS = 62;
+
+    /**
+     * Returns the greatest common divisor of {@code a} and {@code b} by
+     * Stein's binary algorithm, which needs only shifts and subtractions.
+     *
+     * @param a
+     *            limbs of one number
+     * @param b
+     *            limbs of the other number
+     * @return gcd(a, b)
+     */
+    static long[] binaryGcd(long[] a, long[] b) {
+        long[] u = a.clone();
+        long[] v = b.clone();
+        long[] result;
+        if (Limbs.isZero(u)) {
+            result = v;
+        } else if (Limbs.isZero(v)) {
+            result = u;
+        } else {
+            int uZeros = Limbs.trailingZeros(u);
+            int vZeros = Limbs.trailingZeros(v);
+            int common = Math.min(uZeros, vZeros);
+            Limbs.shiftRightInPlace(u, uZeros);
+            Limbs.shiftRightInPlace(v, vZeros);
+            /*
+             * Invariant: u and v are odd and gcd(u, v) * 2^common is the
+             * answer; subtracting the smaller from the larger keeps the gcd
+             * and leaves an even difference whose factors of 2 can go
+             */
+            while (!Limbs.isZero(v)) {
+                if (Limbs.compare(u, v) > 0) {
+                    long[] tmp = u;
+                    u = v;
+                    v = tmp;
+                }
+                if (v.length < u.length) {
+                    v = Arrays.copyOf(v, u.length);
+                }
+                Limbs.subtractInPlace(v, u);
+                if (!Limbs.isZero(v)) {
+                    Limbs.shiftRightInPlace(v, Limbs.trailingZeros(v));
+                }
+            }
+            result = Limbs.shiftLeft(u, common);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the greatest common divisor of {@code a} and {@code b} by
+     * Lehmer's algorithm: Euclid's quotient sequence is simulated on the
+     * leading 62 bits of both numbers, and the accumulated 2x2 cofactor
+     * matrix is applied to the full numbers in one pass, so most steps cost
+     * a single-word division instead of a multi-precision one.
+     *
+     * @param a
+     *            limbs of one number
+     * @param b
+     *            limbs of the other number
+     * @return gcd(a, b)
+     */
+    static long[] lehmerGcd(long[] a, long[] b) {
+        long[] x = a.clone();
+        long[] y = b.clone();
+        if (Limbs.compare(x, y) < 0) {
+            long[] tmp = x;
+            x = y;
+            y = tmp;
+        }
+        while (Limbs.bitLength(y) > LEHMER_BITS) {
+            int shift = Limbs.bitLength(x) - LEHMER_BITS;
+            long xHat = leadingBits(x, shift);
+            long yHat = leadingBits(y, shift);
+            long cA = 1;
+            long cB = 0;
+            long cC = 0;
+            long cD = 1;
+            /*
+             * Take quotient steps while the quotient is certain to match
+             * the one the full numbers would give
+             */
+            while (yHat + cC != 0 && yHat + cD != 0) {
+                long q = (xHat + cA) / (yHat + cC);
+                if (q != (xHat + cB) / (yHat + cD)) {
+                    break;
+                }
+                long t = cA - q * cC;
+                cA = cC;
+                cC = t;
+                t = cB - q * cD;
+                cB = cD;
+                cD = t;
+                t = xHat - q * yHat;
+                xHat = yHat;
+                yHat = t;
+            }
+            if (cB == 0) {
+                /*
+                 * No step could be certified: one full Euclid step
+                 */
+                long[] r = Limbs.remainder(x, y);
+                x = y;
+                y = r;
+            } else {
+                long[] nextX = combine(x, cA, y, cB);
+                long[] nextY = combine(x, cC, y, cD);
+                x = nextX;
+                y = nextY;
+            }
+        }
+        /*
+         * y now fits in a word; one reduction of x brings both down to words
+         */
+        long[] result;
+        if (Limbs.isZero(y)) {
+            result = x;
+        } else {
+            long u = Limbs.remainder(x, y)[0];
+            long v = y[0];
+            while (u != 0) {
+                long t = Long.remainderUnsigned(v, u);
+                v = u;
+                u = t;
+            }
+            result = new long[] { v };
+        }
+        return result;
+    }
+
+    /**
+     * Returns the leading bits of {@code a} after dropping its low
+     * {@code shift} bits.
+     *
+     * @param a
+     *            limbs of the number
+     * @param shift
+     *            number of low bits to drop
+     * @return floor(a / 2^shift), which must fit in LEHMER_BITS bits
+     */
+    private static long leadingBits(long[] a, int shift) {
+        long[] copy = a.clone();
+        if (shift > 0) {
+            Limbs.shiftRightInPlace(copy, shift);
+        }
+        return copy[0];
+    }
+
+    /**
+     * Returns {@code cx * x + cy * y}.
+     *
+     * @param x
+     *            limbs of one number
+     * @param cx
+     *            signed cofactor of x
+     * @param y
+     *            limbs of the other number
+     * @param cy
+     *            signed cofactor of y
+     * @return cx * x + cy * y
+     * @requires cx * x + cy * y >= 0
+     */
+    private static long[] combine(long[] x, long cx, long[] y, long cy) {
+        int len = Math.max(x.length, y.length) + 1;
+        long[] px = Arrays.copyOf(Limbs.multiplySmall(x, Math.abs(cx)), len);
+        long[] py = Arrays.copyOf(Limbs.multiplySmall(y, Math.abs(cy)), len);
+        long[] result;
+        if (cx >= 0 && cy >= 0) {
+            px = Arrays.copyOf(px, len + 1);
+            Limbs.addInPlace(px, py);
+            result = px;
+        } else if (cx >= 0) {
+            Limbs.subtractInPlace(px, py);
+            result = px;
+        } else {
+            Limbs.subtractInPlace(py, px);
+            result = py;
+        }
+        return Arrays.copyOf(result,
+                Math.max(1, Limbs.significantLength(result)));
+    }
+
+}
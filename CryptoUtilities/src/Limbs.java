@@ -0,0 +1,481 @@
+import java.util.Arrays;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Helpers for arbitrary-precision natural numbers represented as
+ * little-endian arrays of 64-bit limbs, each limb read as unsigned.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class Limbs {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Limbs() {
+    }
+
+    /**
+     * Number of bits in a limb.
+     */
+    static final int LIMB_BITS = 64;
+
+    /**
+     * Number of decimal digits converted per step (10^9 fits in 30 bits).
+     */
+    private static final int CHUNK_DIGITS = 9;
+
+    /**
+     * Useful constant, not a magic number: 10^9.
+     */
+    private static final long CHUNK_BASE = 1_000_000_000L;
+
+    /**
+     * Mask selecting the low 32 bits of a long.
+     */
+    private static final long LOW_32 = 0xFFFFFFFFL;
+
+    /**
+     * Useful constant, not a magic number: 32.
+     */
+    private static final int HALF_BITS = 32;
+
+    /**
+     * Returns the high 64 bits of the unsigned 128-bit product of a and b.
+     *
+     * @param a
+     *            one factor, read as unsigned
+     * @param b
+     *            the other factor, read as unsigned
+     * @return high word of a * b
+     */
+    static long multiplyHighUnsigned(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> (LIMB_BITS - 1)) & b)
+                + ((b >> (LIMB_BITS - 1)) & a);
+    }
+
+    /**
+     * Returns the limbs of {@code n}.
+     *
+     * @param n
+     *            the number to convert
+     * @return little-endian limbs of n, with no leading zero limbs except that
+     *         zero is represented by a single zero limb
+     * @ensures fromNaturalNumber = [limbs of n]
+     */
+    static long[] fromNaturalNumber(NaturalNumber n) {
+        return fromDecimalString(n.toString());
+    }
+
+    /**
+     * Returns the limbs of the natural number written in decimal as {@code s}.
+     *
+     * @param s
+     *            decimal digits of the number
+     * @return little-endian limbs of the number
+     * @requires s is a non-empty string of decimal digits
+     * @ensures fromDecimalString = [limbs of the value of s]
+     */
+    static long[] fromDecimalString(String s) {
+        final int digitsPerLimb = 19;
+        long[] result = new long[s.length() / digitsPerLimb + 1];
+        int used = 1;
+        int start = 0;
+        /*
+         * Horner's rule in base 10^9: result = result * 10^k + chunk, where
+         * the first chunk absorbs the leftover digits
+         */
+        int first = s.length() % CHUNK_DIGITS;
+        if (first == 0) {
+            first = CHUNK_DIGITS;
+        }
+        int end = first;
+        while (start < s.length()) {
+            long chunk = Long.parseLong(s.substring(start, end));
+            long scale = 1;
+            for (int i = start; i < end; i++) {
+                scale *= 10;
+            }
+            long carry = chunk;
+            for (int i = 0; i < used; i++) {
+                long lo = result[i] * scale;
+                long hi = multiplyHighUnsigned(result[i], scale);
+                long sum = lo + carry;
+                if (Long.compareUnsigned(sum, lo) < 0) {
+                    hi++;
+                }
+                result[i] = sum;
+                carry = hi;
+            }
+            if (carry != 0) {
+                result[used] = carry;
+                used++;
+            }
+            start = end;
+            end += CHUNK_DIGITS;
+        }
+        return Arrays.copyOf(result, used);
+    }
+
+    /**
+     * Returns the decimal representation of {@code a}.
+     *
+     * @param a
+     *            limbs of the number
+     * @return decimal digits of a, without leading zeros
+     * @ensures toDecimalString = [decimal representation of a]
+     */
+    static String toDecimalString(long[] a) {
+        int[] halves = new int[2 * a.length];
+        for (int i = 0; i < a.length; i++) {
+            halves[2 * i] = (int) a[i];
+            halves[2 * i + 1] = (int) (a[i] >>> HALF_BITS);
+        }
+        int used = halves.length;
+        while (used > 0 && halves[used - 1] == 0) {
+            used--;
+        }
+        if (used == 0) {
+            return "0";
+        }
+        /*
+         * Repeatedly divide by 10^9, collecting remainders from least to most
+         * significant; each 32-bit half yields less than two such chunks
+         */
+        long[] chunks = new long[2 * used];
+        int count = 0;
+        while (used > 0) {
+            long rem = 0;
+            for (int i = used - 1; i >= 0; i--) {
+                long cur = (rem << HALF_BITS) | (halves[i] & LOW_32);
+                halves[i] = (int) (cur / CHUNK_BASE);
+                rem = cur % CHUNK_BASE;
+            }
+            chunks[count] = rem;
+            count++;
+            while (used > 0 && halves[used - 1] == 0) {
+                used--;
+            }
+        }
+        StringBuilder sb = new StringBuilder(count * CHUNK_DIGITS);
+        sb.append(chunks[count - 1]);
+        for (int i = count - 2; i >= 0; i--) {
+            String digits = Long.toString(chunks[i]);
+            for (int j = digits.length(); j < CHUNK_DIGITS; j++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sets {@code n} to the value of {@code a}.
+     *
+     * @param n
+     *            the number to update
+     * @param a
+     *            limbs of the new value
+     * @replaces n
+     * @ensures n = [value of a]
+     */
+    static void setNaturalNumber(NaturalNumber n, long[] a) {
+        n.setFromString(toDecimalString(a));
+    }
+
+    /**
+     * Reports the number of limbs of {@code a} ignoring leading zero limbs.
+     *
+     * @param a
+     *            limbs of the number
+     * @return index of the most significant non-zero limb, plus one
+     */
+    static int significantLength(long[] a) {
+        int len = a.length;
+        while (len > 0 && a[len - 1] == 0) {
+            len--;
+        }
+        return len;
+    }
+
+    /**
+     * Reports the number of significant bits of {@code a}.
+     *
+     * @param a
+     *            limbs of the number
+     * @return bit length of a (0 for zero)
+     */
+    static int bitLength(long[] a) {
+        int len = significantLength(a);
+        int bits = 0;
+        if (len > 0) {
+            bits = (len - 1) * LIMB_BITS + LIMB_BITS
+                    - Long.numberOfLeadingZeros(a[len - 1]);
+        }
+        return bits;
+    }
+
+    /**
+     * Reports bit {@code i} of {@code a}.
+     *
+     * @param a
+     *            limbs of the number
+     * @param i
+     *            index of the bit, 0 being least significant
+     * @return true iff bit i of a is set
+     * @requires i >= 0
+     */
+    static boolean testBit(long[] a, int i) {
+        int limb = i / LIMB_BITS;
+        return limb < a.length && ((a[limb] >>> (i % LIMB_BITS)) & 1L) != 0;
+    }
+
+    /**
+     * Compares {@code a} and {@code b} as unsigned numbers.
+     *
+     * @param a
+     *            limbs of one number
+     * @param b
+     *            limbs of the other number
+     * @return negative, zero, or positive as a is less than, equal to, or
+     *         greater than b
+     */
+    static int compare(long[] a, long[] b) {
+        int lenA = significantLength(a);
+        int lenB = significantLength(b);
+        int result = Integer.compare(lenA, lenB);
+        for (int i = lenA - 1; result == 0 && i >= 0; i--) {
+            result = Long.compareUnsigned(a[i], b[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces {@code a} with {@code a - b} over the first {@code a.length}
+     * limbs and returns the outgoing borrow.
+     *
+     * @param a
+     *            minuend, updated with the difference
+     * @param b
+     *            subtrahend
+     * @return 1 if the subtraction borrowed out of the top limb, else 0
+     * @updates a
+     * @requires b.length <= a.length
+     */
+    static long subtractInPlace(long[] a, long[] b) {
+        long borrow = 0;
+        for (int i = 0; i < a.length; i++) {
+            long bi = 0;
+            if (i < b.length) {
+                bi = b[i];
+            }
+            long diff = a[i] - bi - borrow;
+            if (borrow == 0) {
+                borrow = Long.compareUnsigned(a[i], bi) < 0 ? 1 : 0;
+            } else {
+                borrow = Long.compareUnsigned(a[i], bi) <= 0 ? 1 : 0;
+            }
+            a[i] = diff;
+        }
+        return borrow;
+    }
+
+    /**
+     * Replaces {@code a} with {@code 2 * a} over the first {@code a.length}
+     * limbs and returns the bit shifted out of the top limb.
+     *
+     * @param a
+     *            number to double
+     * @return the bit shifted out of the most significant limb
+     * @updates a
+     */
+    static long shiftLeftOneInPlace(long[] a) {
+        long carry = 0;
+        for (int i = 0; i < a.length; i++) {
+            long next = a[i] >>> (LIMB_BITS - 1);
+            a[i] = (a[i] << 1) | carry;
+            carry = next;
+        }
+        return carry;
+    }
+
+    /**
+     * Reports whether {@code a} is zero.
+     *
+     * @param a
+     *            limbs of the number
+     * @return true iff every limb of a is zero
+     */
+    static boolean isZero(long[] a) {
+        return significantLength(a) == 0;
+    }
+
+    /**
+     * Reports the number of trailing zero bits of {@code a}.
+     *
+     * @param a
+     *            limbs of the number
+     * @return largest k such that 2^k divides a
+     * @requires a /= 0
+     */
+    static int trailingZeros(long[] a) {
+        int i = 0;
+        while (a[i] == 0) {
+            i++;
+        }
+        return i * LIMB_BITS + Long.numberOfTrailingZeros(a[i]);
+    }
+
+    /**
+     * Replaces {@code a} with {@code a / 2^shift}.
+     *
+     * @param a
+     *            number to shift
+     * @param shift
+     *            number of bits to shift by
+     * @updates a
+     * @requires shift >= 0
+     */
+    static void shiftRightInPlace(long[] a, int shift) {
+        int limbShift = shift / LIMB_BITS;
+        int bitShift = shift % LIMB_BITS;
+        for (int i = 0; i < a.length; i++) {
+            long lo = 0;
+            if (i + limbShift < a.length) {
+                lo = a[i + limbShift] >>> bitShift;
+            }
+            if (bitShift != 0 && i + limbShift + 1 < a.length) {
+                lo |= a[i + limbShift + 1] << (LIMB_BITS - bitShift);
+            }
+            a[i] = lo;
+        }
+    }
+
+    /**
+     * Returns {@code a * 2^shift}.
+     *
+     * @param a
+     *            number to shift
+     * @param shift
+     *            number of bits to shift by
+     * @return a * 2^shift, with just enough limbs to hold it
+     * @requires shift >= 0
+     */
+    static long[] shiftLeft(long[] a, int shift) {
+        int limbShift = shift / LIMB_BITS;
+        int bitShift = shift % LIMB_BITS;
+        int len = significantLength(a);
+        long[] result = new long[len + limbShift + 1];
+        for (int i = 0; i < len; i++) {
+            result[i + limbShift] |= a[i] << bitShift;
+            if (bitShift != 0) {
+                result[i + limbShift + 1] = a[i] >>> (LIMB_BITS - bitShift);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code a * c}.
+     *
+     * @param a
+     *            limbs of the number
+     * @param c
+     *            factor, read as unsigned
+     * @return a * c, with a.length + 1 limbs
+     */
+    static long[] multiplySmall(long[] a, long c) {
+        long[] result = new long[a.length + 1];
+        long carry = 0;
+        for (int i = 0; i < a.length; i++) {
+            long lo = a[i] * c;
+            long hi = multiplyHighUnsigned(a[i], c);
+            long sum = lo + carry;
+            if (Long.compareUnsigned(sum, lo) < 0) {
+                hi++;
+            }
+            result[i] = sum;
+            carry = hi;
+        }
+        result[a.length] = carry;
+        return result;
+    }
+
+    /**
+     * Replaces {@code a} with {@code a + b} over the first {@code a.length}
+     * limbs and returns the outgoing carry.
+     *
+     * @param a
+     *            augend, updated with the sum
+     * @param b
+     *            addend
+     * @return 1 if the addition carried out of the top limb, else 0
+     * @updates a
+     * @requires b.length <= a.length
+     */
+    static long addInPlace(long[] a, long[] b) {
+        long carry = 0;
+        for (int i = 0; i < a.length; i++) {
+            long bi = 0;
+            if (i < b.length) {
+                bi = b[i];
+            }
+            long sum = a[i] + bi + carry;
+            if (carry == 0) {
+                carry = Long.compareUnsigned(sum, a[i]) < 0 ? 1 : 0;
+            } else {
+                carry = Long.compareUnsigned(sum, a[i]) <= 0 ? 1 : 0;
+            }
+            a[i] = sum;
+        }
+        return carry;
+    }
+
+    /**
+     * Returns {@code a mod b}, by shift-and-subtract long division over the
+     * bits in which a is longer than b; this is cheap when the quotient is
+     * short.
+     *
+     * @param a
+     *            limbs of the dividend
+     * @param b
+     *            limbs of the divisor
+     * @return a mod b, with b.length + 1 limbs
+     * @requires b /= 0
+     */
+    static long[] remainder(long[] a, long[] b) {
+        assert !isZero(b) : "Violation of: b /= 0";
+        CryptoMetrics.increment(CryptoMetrics.Counter.DIVISIONS);
+        int bitsA = bitLength(a);
+        int bitsB = bitLength(b);
+        long[] r = new long[significantLength(b) + 1];
+        if (bitsA < bitsB) {
+            System.arraycopy(a, 0, r, 0, significantLength(a));
+        } else {
+            /*
+             * Start from the top bitsB bits of a, then bring down one bit of a
+             * at a time, keeping r < b
+             */
+            int extra = bitsA - bitsB;
+            long[] top = Arrays.copyOf(a, Math.max(a.length, r.length));
+            shiftRightInPlace(top, extra);
+            System.arraycopy(top, 0, r, 0, r.length);
+            if (compare(r, b) >= 0) {
+                subtractInPlace(r, b);
+            }
+            for (int i = extra - 1; i >= 0; i--) {
+                shiftLeftOneInPlace(r);
+                if (testBit(a, i)) {
+                    r[0] |= 1L;
+                }
+                if (compare(r, b) >= 0) {
+                    subtractInPlace(r, b);
+                }
+            }
+        }
+        return r;
+    }
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Deterministic Miller-Rabin primality test for numbers below 2^64, using
+ * Montgomery multiplication on single words so that no object is allocated.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class MillerRabin64 {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private MillerRabin64() {
+    }
+
+    /**
+     * Bases for which the strong probable-prime test has no false positive
+     * below 2^64 (Jim Sinclair's set).
+     */
+    private static final long[] WITNESSES = { 2, 325, 9375, 28178, 450775,
+            9780504, 1795265022 };
+
+    /**
+     * Small primes tried by division first, which also settles every n
+     * below the square of the largest of them.
+     */
+    private static final long[] SMALL_PRIMES = { 2, 3, 5, 7, 11, 13, 17, 19,
+            23, 29, 31, 37 };
+
+    /**
+     * Number of bits in a word.
+     */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * Reports whether {@code n}, read as unsigned, is prime.
+     *
+     * @param n
+     *            number to be checked, read as unsigned
+     * @return true iff n is prime
+     * @ensures isPrime = [n is a prime number]
+     */
+    static boolean isPrime(long n) {
+        boolean prime = Long.compareUnsigned(n, 2) >= 0;
+        boolean settled = !prime;
+        for (int i = 0; i < SMALL_PRIMES.length && !settled; i++) {
+            if (Long.remainderUnsigned(n, SMALL_PRIMES[i]) == 0) {
+                prime = n == SMALL_PRIMES[i];
+                settled = true;
+            }
+        }
+        long largest = SMALL_PRIMES[SMALL_PRIMES.length - 1];
+        if (!settled && Long.compareUnsigned(n, largest * largest) >= 0) {
+            /*
+             * n - 1 = 2^s * d with d odd
+             */
+            int s = Long.numberOfTrailingZeros(n - 1);
+            long d = (n - 1) >>> s;
+
+            long nInv = MontgomeryContext.negatedInverse(n);
+            long one = Long.remainderUnsigned(-n, n);
+            long minusOne = n - one;
+            long rSquared = one;
+            for (int i = 0; i < WORD_BITS; i++) {
+                rSquared = addMod(rSquared, rSquared, n);
+            }
+
+            for (int w = 0; w < WITNESSES.length && prime; w++) {
+                long a = Long.remainderUnsigned(WITNESSES[w], n);
+                if (a != 0) {
+                    long x = powMont(multiply(a, rSquared, n, nInv), d, one,
+                            n, nInv);
+                    if (x != one && x != minusOne) {
+                        prime = false;
+                        for (int i = 1; i < s && !prime; i++) {
+                            x = multiply(x, x, n, nInv);
+                            prime = x == minusOne;
+                        }
+                    }
+                }
+            }
+        }
+        return prime;
+    }
+
+    /**
+     * Returns {@code (a + b) mod n}.
+     *
+     * @param a
+     *            one addend, read as unsigned
+     * @param b
+     *            other addend, read as unsigned
+     * @param n
+     *            the modulus, read as unsigned
+     * @return (a + b) mod n
+     * @requires a < n and b < n
+     */
+    private static long addMod(long a, long b, long n) {
+        long sum = a + b;
+        if (Long.compareUnsigned(sum, a) < 0
+                || Long.compareUnsigned(sum, n) >= 0) {
+            sum -= n;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a * b * 2^(-64) mod n.
+     *
+     * @param a
+     *            one factor, read as unsigned
+     * @param b
+     *            other factor, read as unsigned
+     * @param n
+     *            the modulus, read as unsigned
+     * @param nInv
+     *            -n^(-1) mod 2^64
+     * @return a * b * 2^(-64) mod n
+     * @requires a < n and b < n and n is odd
+     */
+    private static long multiply(long a, long b, long n, long nInv) {
+        long lo = a * b;
+        long hi = Limbs.multiplyHighUnsigned(a, b);
+        long m = lo * nInv;
+        long mnHi = Limbs.multiplyHighUnsigned(m, n);
+        /*
+         * lo + m * n is 0 mod 2^64, so it carries exactly when lo is not 0
+         */
+        long carry = lo != 0 ? 1 : 0;
+        long t = hi + mnHi;
+        boolean overflow = Long.compareUnsigned(t, hi) < 0;
+        long t2 = t + carry;
+        overflow |= Long.compareUnsigned(t2, t) < 0;
+        if (overflow || Long.compareUnsigned(t2, n) >= 0) {
+            t2 -= n;
+        }
+        return t2;
+    }
+
+    /**
+     * Returns x^e in Montgomery form.
+     *
+     * @param x
+     *            base in Montgomery form
+     * @param e
+     *            exponent, read as unsigned
+     * @param one
+     *            2^64 mod n, i.e., 1 in Montgomery form
+     * @param n
+     *            the modulus
+     * @param nInv
+     *            -n^(-1) mod 2^64
+     * @return x^e in Montgomery form
+     */
+    private static long powMont(long x, long e, long one, long n, long nInv) {
+        long result = one;
+        int top = WORD_BITS - 1 - Long.numberOfLeadingZeros(e);
+        for (int i = top; i >= 0; i--) {
+            result = multiply(result, result, n, nInv);
+            if (((e >>> i) & 1L) != 0) {
+                result = multiply(result, x, n, nInv);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,824 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Montgomery multiplication modulo a fixed odd modulus m over 64-bit limbs.
+ * With k the number of limbs of m and R = 2^(64k), a value x in [0, m) is
+ * held in Montgomery form as x * R mod m, so that a modular product needs no
+ * division by m.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class MontgomeryContext {
+
+    /**
+     * Largest supported sliding-window width.
+     */
+    static final int MAX_WINDOW = 6;
+
+    /**
+     * Number of moduli whose contexts are kept for reuse.
+     */
+    private static final int CONTEXT_CACHE_SIZE = 16;
+
+    /**
+     * Number of bases whose odd-power tables are kept per modulus.
+     */
+    private static final int TABLE_CACHE_SIZE = 8;
+
+    /**
+     * Window width of modPowConstantTime; divides the limb size, so no window
+     * straddles two limbs.
+     */
+    private static final int CONSTANT_TIME_WINDOW = 4;
+
+    /**
+     * Recently built contexts, keyed by modulus.
+     */
+    private static final Map<LimbKey, MontgomeryContext> CONTEXTS = lruMap(
+            CONTEXT_CACHE_SIZE);
+
+    /**
+     * Recently built odd-power tables for this modulus, keyed by base.
+     */
+    private final Map<LimbKey, long[][]> tables = lruMap(TABLE_CACHE_SIZE);
+
+    /**
+     * Limbs of the modulus, exactly k of them.
+     */
+    private final long[] modulus;
+
+    /**
+     * -m^(-1) mod 2^64.
+     */
+    private final long mPrime;
+
+    /**
+     * R mod m, i.e., 1 in Montgomery form.
+     */
+    private final long[] one;
+
+    /**
+     * R^2 mod m, used to convert into Montgomery form.
+     */
+    private final long[] rSquared;
+
+    /**
+     * Constructs the context for modulus {@code m}.
+     *
+     * @param m
+     *            limbs of the modulus
+     * @requires m is odd and m > 1
+     */
+    MontgomeryContext(long[] m) {
+        assert (m[0] & 1L) != 0 : "Violation of: m is odd";
+        int k = Limbs.significantLength(m);
+        this.modulus = Arrays.copyOf(m, k);
+        assert k > 1 || m[0] != 1 : "Violation of: m > 1";
+        this.mPrime = negatedInverse(m[0]);
+
+        /*
+         * R mod m and R^2 mod m by repeated doubling of 1 modulo m, which
+         * avoids needing a general division routine
+         */
+        long[] x = new long[k];
+        x[0] = 1;
+        int bits = Limbs.LIMB_BITS * k;
+        for (int i = 0; i < bits; i++) {
+            this.doubleModInPlace(x);
+        }
+        this.one = x.clone();
+        for (int i = 0; i < bits; i++) {
+            this.doubleModInPlace(x);
+        }
+        this.rSquared = x;
+    }
+
+    /**
+     * Replaces {@code x} with {@code 2 * x mod m}.
+     *
+     * @param x
+     *            value to double
+     * @updates x
+     * @requires 0 <= x < m
+     */
+    private void doubleModInPlace(long[] x) {
+        long carry = Limbs.shiftLeftOneInPlace(x);
+        if (carry != 0 || Limbs.compare(x, this.modulus) >= 0) {
+            Limbs.subtractInPlace(x, this.modulus);
+        }
+    }
+
+    /**
+     * Reports the number of limbs of the modulus.
+     *
+     * @return k
+     */
+    int limbCount() {
+        return this.modulus.length;
+    }
+
+    /**
+     * Returns {@code a} padded to exactly k limbs.
+     *
+     * @param a
+     *            limbs of a value less than m
+     * @return copy of a with k limbs
+     */
+    long[] pad(long[] a) {
+        return Arrays.copyOf(a, this.modulus.length);
+    }
+
+    /**
+     * Sets {@code out} to a * b * R^(-1) mod m (CIOS method).
+     *
+     * @param a
+     *            first factor, k limbs
+     * @param b
+     *            second factor, k limbs
+     * @param out
+     *            result, k limbs; may alias a or b
+     * @param t
+     *            scratch space of at least k + 2 limbs
+     * @replaces out, t
+     * @requires a < m and b < m
+     * @ensures out = a * b * R^(-1) mod m
+     */
+    void multiply(long[] a, long[] b, long[] out, long[] t) {
+        CryptoMetrics.increment(CryptoMetrics.Counter.MULTIPLICATIONS);
+        int k = this.modulus.length;
+        long[] n = this.modulus;
+        this.productTimesRInverse(a, b, t);
+        /*
+         * Result is below 2m; one conditional subtraction brings it below m
+         */
+        boolean reduce = t[k] != 0;
+        if (!reduce) {
+            int i = k - 1;
+            while (i > 0 && t[i] == n[i]) {
+                i--;
+            }
+            reduce = Long.compareUnsigned(t[i], n[i]) >= 0;
+        }
+        if (reduce) {
+            long borrow = 0;
+            for (int i = 0; i < k; i++) {
+                long diff = t[i] - n[i] - borrow;
+                if (borrow == 0) {
+                    borrow = Long.compareUnsigned(t[i], n[i]) < 0 ? 1 : 0;
+                } else {
+                    borrow = Long.compareUnsigned(t[i], n[i]) <= 0 ? 1 : 0;
+                }
+                out[i] = diff;
+            }
+        } else {
+            System.arraycopy(t, 0, out, 0, k);
+        }
+    }
+
+    /**
+     * Sets {@code out} to a * b * R^(-1) mod m like multiply, but with
+     * control flow and memory accesses that do not depend on the values of
+     * a and b: the final subtraction of m is always computed and then kept
+     * or dropped with a mask.
+     *
+     * @param a
+     *            first factor, k limbs
+     * @param b
+     *            second factor, k limbs
+     * @param out
+     *            result, k limbs; may alias a or b
+     * @param t
+     *            scratch space of at least k + 2 limbs
+     * @replaces out, t
+     * @requires a < m and b < m
+     * @ensures out = a * b * R^(-1) mod m
+     */
+    void multiplyConstantTime(long[] a, long[] b, long[] out, long[] t) {
+        CryptoMetrics.increment(CryptoMetrics.Counter.MULTIPLICATIONS);
+        int k = this.modulus.length;
+        long[] n = this.modulus;
+        this.productTimesRInverse(a, b, t);
+        long borrow = 0;
+        for (int i = 0; i < k; i++) {
+            long ti = t[i];
+            long diff = ti - n[i] - borrow;
+            borrow = borrowOut(ti, n[i], diff);
+            out[i] = diff;
+        }
+        /*
+         * Keep t - m unless t < m, i.e., unless the subtraction borrowed out
+         * of the k limbs and t has no (k+1)-st limb to absorb it
+         */
+        long mask = -(t[k] | (borrow ^ 1));
+        for (int i = 0; i < k; i++) {
+            out[i] = (out[i] & mask) | (t[i] & ~mask);
+        }
+    }
+
+    /**
+     * Returns -m0^(-1) mod 2^64, by Newton iteration: m0 is its own inverse
+     * modulo 8, and each step doubles the correct bits.
+     *
+     * @param m0
+     *            least significant limb of the modulus
+     * @return -m0^(-1) mod 2^64
+     * @requires m0 is odd
+     */
+    static long negatedInverse(long m0) {
+        final int newtonSteps = 5;
+        long inv = m0;
+        for (int i = 0; i < newtonSteps; i++) {
+            inv *= 2 - m0 * inv;
+        }
+        return -inv;
+    }
+
+    /**
+     * Replaces {@code a} with a * w * 2^(-64) mod m: one word-sized
+     * Montgomery step, in place and in O(k). It needs only
+     * negatedInverse(m[0]), not R or R^2, so it suits one-off moduli for
+     * which building a context would cost more than the steps themselves.
+     *
+     * @param a
+     *            first factor, k + 1 limbs with a[k] = 0; updated with the
+     *            result, again with a[k] = 0
+     * @param w
+     *            second factor, one limb, read as unsigned
+     * @param m
+     *            limbs of the modulus, exactly k of them
+     * @param mPrime
+     *            negatedInverse(m[0])
+     * @updates a
+     * @requires m is odd and a < m
+     * @ensures a = #a * w * 2^(-64) mod m
+     */
+    static void multiplyWordInPlace(long[] a, long w, long[] m,
+            long mPrime) {
+        CryptoMetrics.increment(CryptoMetrics.Counter.MULTIPLICATIONS);
+        int k = m.length;
+        /*
+         * Add q * m to a * w, with q chosen so the low limb cancels, and
+         * shift down one limb as the sum is formed: limb i of the sum lands
+         * in a[i - 1], which has been read already
+         */
+        long q = a[0] * w * mPrime;
+        long carryA = 0;
+        long carryM = 0;
+        for (int i = 0; i < k; i++) {
+            long lo = a[i] * w + carryA;
+            long hi = Limbs.multiplyHighUnsigned(a[i], w);
+            if (Long.compareUnsigned(lo, carryA) < 0) {
+                hi++;
+            }
+            carryA = hi;
+            long sum = q * m[i] + lo;
+            long high = Limbs.multiplyHighUnsigned(q, m[i]);
+            if (Long.compareUnsigned(sum, lo) < 0) {
+                high++;
+            }
+            sum += carryM;
+            if (Long.compareUnsigned(sum, carryM) < 0) {
+                high++;
+            }
+            carryM = high;
+            if (i > 0) {
+                a[i - 1] = sum;
+            }
+        }
+        long top = carryA + carryM;
+        a[k - 1] = top;
+        a[k] = Long.compareUnsigned(top, carryA) < 0 ? 1 : 0;
+        //the sum is below 2m; one conditional subtraction brings it below m
+        if (Limbs.compare(a, m) >= 0) {
+            Limbs.subtractInPlace(a, m);
+        }
+    }
+
+    /**
+     * Sets t[0..k] to a value below 2m that is congruent to a * b * R^(-1)
+     * modulo m. Carries are derived arithmetically rather than by
+     * comparisons, so nothing here branches on the data.
+     *
+     * @param a
+     *            first factor, k limbs
+     * @param b
+     *            second factor, k limbs
+     * @param t
+     *            scratch space of at least k + 2 limbs
+     * @replaces t
+     * @requires a < m and b < m
+     */
+    private void productTimesRInverse(long[] a, long[] b, long[] t) {
+        int k = this.modulus.length;
+        long[] n = this.modulus;
+        Arrays.fill(t, 0, k + 2, 0L);
+        for (int i = 0; i < k; i++) {
+            /*
+             * t += a * b[i]
+             */
+            long bi = b[i];
+            long carry = 0;
+            for (int j = 0; j < k; j++) {
+                long lo = a[j] * bi;
+                long hi = Limbs.multiplyHighUnsigned(a[j], bi);
+                long tj = t[j];
+                long s = lo + tj;
+                hi += carryOut(lo, tj, s);
+                long s2 = s + carry;
+                hi += carryOut(s, carry, s2);
+                t[j] = s2;
+                carry = hi;
+            }
+            long s = t[k] + carry;
+            t[k + 1] = carryOut(t[k], carry, s);
+            t[k] = s;
+
+            /*
+             * t = (t + u * m) / 2^64, with u chosen so the low limb vanishes
+             */
+            long u = t[0] * this.mPrime;
+            long lo = u * n[0];
+            carry = Limbs.multiplyHighUnsigned(u, n[0])
+                    + carryOut(lo, t[0], lo + t[0]);
+            for (int j = 1; j < k; j++) {
+                lo = u * n[j];
+                long hi = Limbs.multiplyHighUnsigned(u, n[j]);
+                long tj = t[j];
+                long sum = lo + tj;
+                hi += carryOut(lo, tj, sum);
+                long sum2 = sum + carry;
+                hi += carryOut(sum, carry, sum2);
+                t[j - 1] = sum2;
+                carry = hi;
+            }
+            s = t[k] + carry;
+            t[k - 1] = s;
+            t[k] = t[k + 1] + carryOut(t[k], carry, s);
+        }
+    }
+
+    /**
+     * Returns the carry out of the 64-bit addition {@code x + y = sum}.
+     *
+     * @param x
+     *            one addend
+     * @param y
+     *            other addend
+     * @param sum
+     *            x + y, modulo 2^64
+     * @return 1 if x + y overflowed, else 0
+     */
+    private static long carryOut(long x, long y, long sum) {
+        return ((x & y) | ((x | y) & ~sum)) >>> (Limbs.LIMB_BITS - 1);
+    }
+
+    /**
+     * Returns the borrow out of the 64-bit subtraction
+     * {@code x - y - borrowIn = diff}.
+     *
+     * @param x
+     *            the minuend
+     * @param y
+     *            the subtrahend
+     * @param diff
+     *            x - y - borrowIn, modulo 2^64, for a borrowIn of 0 or 1
+     * @return 1 if the subtraction borrowed, else 0
+     */
+    private static long borrowOut(long x, long y, long diff) {
+        return ((~x & y) | (~(x ^ y) & diff)) >>> (Limbs.LIMB_BITS - 1);
+    }
+
+    /**
+     * Returns {@code a} converted into Montgomery form.
+     *
+     * @param a
+     *            value, at most k limbs
+     * @return a * R mod m, k limbs
+     * @requires a < m
+     */
+    long[] toMontgomery(long[] a) {
+        long[] result = this.pad(a);
+        this.multiply(result, this.rSquared, result,
+                new long[this.modulus.length + 2]);
+        return result;
+    }
+
+    /**
+     * Returns {@code a} converted out of Montgomery form.
+     *
+     * @param a
+     *            value in Montgomery form, k limbs
+     * @return a * R^(-1) mod m, k limbs
+     */
+    long[] fromMontgomery(long[] a) {
+        long[] unit = new long[this.modulus.length];
+        unit[0] = 1;
+        long[] result = new long[this.modulus.length];
+        this.multiply(a, unit, result, new long[this.modulus.length + 2]);
+        return result;
+    }
+
+    /**
+     * Returns the default sliding-window width for an exponent of the given
+     * bit length, balancing table construction against multiplications saved.
+     *
+     * @param exponentBits
+     *            bit length of the exponent
+     * @return window width in bits, between 1 and MAX_WINDOW
+     */
+    static int defaultWindow(int exponentBits) {
+        final int[] thresholds = {7, 25, 81, 241, 673 };
+        int window = 1;
+        while (window <= thresholds.length
+                && exponentBits > thresholds[window - 1]) {
+            window++;
+        }
+        return window;
+    }
+
+    /**
+     * Returns the odd powers base^1, base^3, ..., base^(2^window - 1) in
+     * Montgomery form, reusing (and growing) the table cached for this base.
+     *
+     * @param base
+     *            limbs of the base
+     * @param window
+     *            window width in bits
+     * @return table whose entry i is base^(2i + 1) * R mod m; at least
+     *         2^(window - 1) entries
+     * @requires base < m and 1 <= window <= MAX_WINDOW
+     */
+    long[][] oddPowers(long[] base, int window) {
+        assert 1 <= window
+                && window <= MAX_WINDOW : "Violation of: window in range";
+        LimbKey key = new LimbKey(base);
+        int size = 1 << (window - 1);
+        long[][] table;
+        synchronized (this.tables) {
+            table = this.tables.get(key);
+        }
+        if (table == null || table.length < size) {
+            table = this.extendOddPowers(table, base, size);
+            synchronized (this.tables) {
+                long[][] cached = this.tables.get(key);
+                if (cached == null || cached.length < table.length) {
+                    this.tables.put(key, table);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the odd powers base^1, base^3, ..., base^(2 * size - 1) in
+     * Montgomery form, reusing the entries of {@code table}.
+     *
+     * @param table
+     *            leading entries already computed, or null for none
+     * @param base
+     *            limbs of the base
+     * @param size
+     *            number of entries wanted
+     * @return table whose entry i is base^(2i + 1) * R mod m; at least size
+     *         entries
+     * @requires base < m and size >= 1
+     */
+    private long[][] extendOddPowers(long[][] table, long[] base, int size) {
+        long[][] grown = new long[size][];
+        int start = 0;
+        if (table == null) {
+            grown[0] = this.toMontgomery(base);
+            start = 1;
+        } else {
+            System.arraycopy(table, 0, grown, 0, table.length);
+            start = table.length;
+        }
+        if (start < size) {
+            long[] t = new long[this.modulus.length + 2];
+            long[] square = new long[this.modulus.length];
+            this.multiply(grown[0], grown[0], square, t);
+            for (int i = start; i < size; i++) {
+                grown[i] = new long[this.modulus.length];
+                this.multiply(grown[i - 1], square, grown[i], t);
+            }
+        }
+        return grown;
+    }
+
+    /**
+     * Returns {@code base} raised to {@code exponent} modulo m, using
+     * sliding-window exponentiation with the default window width.
+     *
+     * @param base
+     *            limbs of the base
+     * @param exponent
+     *            limbs of the exponent
+     * @return base ^ exponent mod m, k limbs
+     * @requires base < m
+     */
+    long[] modPow(long[] base, long[] exponent) {
+        return this.modPow(base, exponent,
+                defaultWindow(Limbs.bitLength(exponent)));
+    }
+
+    /**
+     * Returns {@code base} raised to {@code exponent} modulo m, scanning the
+     * exponent from its most significant bit and consuming runs of up to
+     * {@code window} bits that start and end with a 1 against a table of odd
+     * powers of the base. A window of 1 is plain square-and-multiply.
+     *
+     * @param base
+     *            limbs of the base
+     * @param exponent
+     *            limbs of the exponent
+     * @param window
+     *            window width in bits
+     * @return base ^ exponent mod m, k limbs
+     * @requires base < m and 1 <= window <= MAX_WINDOW
+     */
+    long[] modPow(long[] base, long[] exponent, int window) {
+        return this.fromMontgomery(this.powerToMontgomery(
+                this.oddPowers(base, window), exponent, window));
+    }
+
+    /**
+     * Returns {@code base} raised to {@code exponent} modulo m, like modPow,
+     * but builds the table of odd powers for this call only instead of
+     * caching it. For bases that are not expected to recur, e.g., the
+     * messages of a batch; it also never contends for the cache lock.
+     *
+     * @param base
+     *            limbs of the base
+     * @param exponent
+     *            limbs of the exponent
+     * @return base ^ exponent mod m, k limbs
+     * @requires base < m
+     */
+    long[] modPowUncached(long[] base, long[] exponent) {
+        int window = defaultWindow(Limbs.bitLength(exponent));
+        long[][] table = this.extendOddPowers(null, base, 1 << (window - 1));
+        return this.fromMontgomery(
+                this.powerToMontgomery(table, exponent, window));
+    }
+
+    /**
+     * Returns {@code base} raised to {@code exponent} modulo m with control
+     * flow and memory accesses that do not depend on the base or on the bits
+     * of the exponent, for secret exponents. Fixed-window exponentiation:
+     * all 2^4 powers of the base are tabulated, and every 4-bit digit of the
+     * exponent, zero or not, costs four squarings and one multiplication by
+     * a table entry fetched by a masked scan of the whole table. How long
+     * this takes depends only on k and on the number of limbs of the
+     * exponent, both of which are public in RSA.
+     *
+     * @param base
+     *            limbs of the base
+     * @param exponent
+     *            limbs of the exponent
+     * @return base ^ exponent mod m, k limbs
+     * @requires base < m
+     */
+    long[] modPowConstantTime(long[] base, long[] exponent) {
+        int k = this.modulus.length;
+        long[] t = new long[k + 2];
+        int size = 1 << CONSTANT_TIME_WINDOW;
+        long[][] table = new long[size][];
+        table[0] = this.one.clone();
+        table[1] = this.pad(base);
+        this.multiplyConstantTime(table[1], this.rSquared, table[1], t);
+        for (int i = 2; i < size; i++) {
+            table[i] = new long[k];
+            this.multiplyConstantTime(table[i - 1], table[1], table[i], t);
+        }
+
+        long[] e = Arrays.copyOf(exponent, Math.max(k, exponent.length));
+        long[] acc = this.one.clone();
+        long[] entry = new long[k];
+        for (int i = e.length * Limbs.LIMB_BITS
+                - CONSTANT_TIME_WINDOW; i >= 0; i -= CONSTANT_TIME_WINDOW) {
+            for (int j = 0; j < CONSTANT_TIME_WINDOW; j++) {
+                this.multiplyConstantTime(acc, acc, acc, t);
+            }
+            int digit = (int) (e[i / Limbs.LIMB_BITS] >>> (i % Limbs.LIMB_BITS))
+                    & (size - 1);
+            select(table, digit, entry);
+            this.multiplyConstantTime(acc, entry, acc, t);
+        }
+
+        long[] unit = new long[k];
+        unit[0] = 1;
+        this.multiplyConstantTime(acc, unit, acc, t);
+        return acc;
+    }
+
+    /**
+     * Copies table[index] into {@code out} by reading every entry and
+     * keeping the wanted one with a mask, so which entry is wanted does not
+     * show in the memory access pattern.
+     *
+     * @param table
+     *            the entries, each as long as out
+     * @param index
+     *            index of the wanted entry
+     * @param out
+     *            where the entry goes
+     * @replaces out
+     * @requires 0 <= index < |table|
+     */
+    private static void select(long[][] table, int index, long[] out) {
+        Arrays.fill(out, 0L);
+        for (int i = 0; i < table.length; i++) {
+            //all ones when i = index, else all zeros
+            long mask = ((long) (i ^ index) - 1) >> (Limbs.LIMB_BITS - 1);
+            long[] row = table[i];
+            for (int j = 0; j < out.length; j++) {
+                out[j] |= row[j] & mask;
+            }
+        }
+    }
+
+    /**
+     * Returns the base whose odd powers are in {@code table} raised to
+     * {@code exponent} modulo m, in Montgomery form; see modPow.
+     *
+     * @param table
+     *            odd powers of the base, as made by oddPowers
+     * @param exponent
+     *            limbs of the exponent
+     * @param window
+     *            window width in bits
+     * @return base ^ exponent * R mod m, k limbs
+     * @requires |table| >= 2^(window - 1) and 1 <= window <= MAX_WINDOW
+     */
+    private long[] powerToMontgomery(long[][] table, long[] exponent,
+            int window) {
+        long[] t = new long[this.modulus.length + 2];
+        long[] acc = this.one.clone();
+        boolean started = false;
+        int i = Limbs.bitLength(exponent) - 1;
+        while (i >= 0) {
+            if (!Limbs.testBit(exponent, i)) {
+                if (started) {
+                    this.multiply(acc, acc, acc, t);
+                }
+                i--;
+            } else {
+                /*
+                 * Longest run exponent[i..low] of at most window bits whose
+                 * lowest bit is set, so its value indexes the odd-power table
+                 */
+                int low = Math.max(i - window + 1, 0);
+                while (!Limbs.testBit(exponent, low)) {
+                    low++;
+                }
+                int value = 0;
+                for (int j = i; j >= low; j--) {
+                    value = (value << 1) | (Limbs.testBit(exponent, j) ? 1 : 0);
+                    if (started) {
+                        this.multiply(acc, acc, acc, t);
+                    }
+                }
+                if (started) {
+                    this.multiply(acc, table[value >>> 1], acc, t);
+                } else {
+                    System.arraycopy(table[value >>> 1], 0, acc, 0, acc.length);
+                    started = true;
+                }
+                i = low - 1;
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Reports whether {@code w} is a strong witness that m is composite, i.e.,
+     * whether m fails the Miller-Rabin test to base w. With m - 1 = 2^s * d
+     * and d odd, w^d is computed once and then squared at most s - 1 times.
+     *
+     * @param w
+     *            limbs of the witness candidate
+     * @return true iff w^d mod m /= 1 and w^(2^j * d) mod m /= m - 1 for
+     *         every 0 <= j < s
+     * @requires m > 3 and 1 < w < m - 1
+     */
+    boolean isStrongWitness(long[] w) {
+        long[] minusOne = this.modulus.clone();
+        minusOne[0]--;
+        int s = Limbs.trailingZeros(minusOne);
+        long[] d = minusOne.clone();
+        Limbs.shiftRightInPlace(d, s);
+
+        /*
+         * -1 in Montgomery form is m - R mod m
+         */
+        long[] negativeOne = this.modulus.clone();
+        Limbs.subtractInPlace(negativeOne, this.one);
+
+        //witnesses are random, so their odd powers are not worth caching
+        int window = defaultWindow(Limbs.bitLength(d));
+        long[] x = this.powerToMontgomery(
+                this.extendOddPowers(null, w, 1 << (window - 1)), d, window);
+        boolean witness = !Arrays.equals(x, this.one)
+                && !Arrays.equals(x, negativeOne);
+        long[] t = new long[this.modulus.length + 2];
+        for (int i = 1; i < s && witness; i++) {
+            this.multiply(x, x, x, t);
+            if (Arrays.equals(x, negativeOne)) {
+                witness = false;
+            } else if (Arrays.equals(x, this.one)) {
+                /*
+                 * 1 reached without passing through -1: a nontrivial square
+                 * root of 1, so m is composite and later squares stay 1
+                 */
+                break;
+            }
+        }
+        return witness;
+    }
+
+    /**
+     * Returns the context for modulus {@code m}, reusing a recently built one
+     * when available.
+     *
+     * @param m
+     *            limbs of the modulus
+     * @return context for m
+     * @requires m is odd and m > 1
+     */
+    static MontgomeryContext forModulus(long[] m) {
+        LimbKey key = new LimbKey(m);
+        MontgomeryContext context;
+        synchronized (CONTEXTS) {
+            context = CONTEXTS.get(key);
+        }
+        if (context == null) {
+            context = new MontgomeryContext(m);
+            synchronized (CONTEXTS) {
+                CONTEXTS.put(key, context);
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Immutable wrapper giving limb arrays value semantics as map keys;
+     * leading zero limbs are ignored.
+     */
+    private static final class LimbKey {
+
+        /**
+         * Limbs of the value, without leading zero limbs.
+         */
+        private final long[] limbs;
+
+        /**
+         * Constructs the key for {@code a}.
+         *
+         * @param a
+         *            limbs of the value
+         */
+        LimbKey(long[] a) {
+            this.limbs = Arrays.copyOf(a, Limbs.significantLength(a));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof LimbKey
+                    && Arrays.equals(this.limbs, ((LimbKey) obj).limbs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.limbs);
+        }
+
+    }
+
+    /**
+     * Returns an access-ordered map holding at most {@code capacity} entries,
+     * evicting the least recently used one beyond that.
+     *
+     * @param <V>
+     *            type of the values
+     * @param capacity
+     *            maximum number of entries
+     * @return new empty LRU map
+     */
+    private static <V> Map<LimbKey, V> lruMap(int capacity) {
+        final float loadFactor = 0.75f;
+        return new LinkedHashMap<LimbKey, V>(capacity, loadFactor,
+                true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<LimbKey, V> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,111 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of recent primality verdicts, keyed by the decimal
+ * representation of the number tested, evicting the least recently used
+ * entry when full. A verdict of "probably prime" records how many rounds it
+ * survived, so it answers later queries only when it is at least as strong
+ * as they ask for; "composite" is certain and answers every query. Safe to
+ * share between threads.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class PrimalityCache {
+
+    /**
+     * Value recorded for a number known to be composite.
+     */
+    private static final int COMPOSITE = -1;
+
+    /**
+     * Verdicts, as the number of rounds passed or COMPOSITE; guarded by
+     * itself.
+     */
+    private final Map<String, Integer> verdicts;
+
+    /**
+     * Constructs an empty cache holding at most {@code capacity} verdicts.
+     *
+     * @param capacity
+     *            maximum number of verdicts
+     * @requires capacity > 0
+     */
+    PrimalityCache(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+        final float loadFactor = 0.75f;
+        this.verdicts = new LinkedHashMap<String, Integer>(capacity,
+                loadFactor, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Integer> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached verdict for {@code digits}, if there is one that
+     * settles a query needing {@code rounds} rounds.
+     *
+     * @param digits
+     *            decimal representation of the number
+     * @param rounds
+     *            number of rounds the query needs
+     * @return FALSE if the number is known to be composite, TRUE if it
+     *         passed at least {@code rounds} rounds, and null otherwise
+     */
+    Boolean lookup(String digits, int rounds) {
+        Integer verdict;
+        synchronized (this.verdicts) {
+            verdict = this.verdicts.get(digits);
+        }
+        Boolean result = null;
+        if (verdict != null) {
+            if (verdict == COMPOSITE) {
+                result = Boolean.FALSE;
+            } else if (verdict >= rounds) {
+                result = Boolean.TRUE;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets every verdict.
+     */
+    void clear() {
+        synchronized (this.verdicts) {
+            this.verdicts.clear();
+        }
+    }
+
+    /**
+     * Records the verdict for {@code digits}, keeping the stronger of it
+     * and any verdict already cached.
+     *
+     * @param digits
+     *            decimal representation of the number
+     * @param prime
+     *            whether the number passed every round
+     * @param rounds
+     *            number of rounds run
+     */
+    void record(String digits, boolean prime, int rounds) {
+        int verdict = COMPOSITE;
+        if (prime) {
+            verdict = rounds;
+        }
+        synchronized (this.verdicts) {
+            Integer old = this.verdicts.get(digits);
+            if (old == null || (old != COMPOSITE && old < verdict)
+                    || verdict == COMPOSITE) {
+                this.verdicts.put(digits, verdict);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,528 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Staged pipeline that generates random likely primes of a fixed bit length.
+ * Candidates flow through four stages connected by bounded queues, each stage
+ * run by its own pool of worker threads:
+ * <ol>
+ * <li>generation: random odd numbers in [2^(bits-1), 2^bits) from
+ * {@code CryptoUtilities.randomNumber};</li>
+ * <li>sieve: rejection of numbers with an odd prime factor below
+ * {@code SIEVE_BOUND};</li>
+ * <li>trial division: rejection of numbers with an odd prime factor below
+ * {@code SmallPrimeSieve.LIMIT}, by one gcd with the product of those
+ * primes;</li>
+ * <li>Miller-Rabin: as many rounds as {@code CryptoUtilities.isPrime2} runs,
+ * but without its trial division, already done above, or its verdict cache,
+ * which fresh random candidates would only churn.</li>
+ * </ol>
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class PrimeGenerationPipeline {
+
+    /**
+     * Primes below this bound are handled by the sieve stage, the rest by the
+     * trial division stage.
+     */
+    private static final int SIEVE_BOUND = 256;
+
+    /**
+     * Smallest supported bit length: candidates must exceed every prime used
+     * for filtering.
+     */
+    public static final int MIN_BITS = 16;
+
+    /**
+     * Miller-Rabin rounds per candidate, as many as isPrime2 runs by default.
+     */
+    private static final int ROUNDS = CryptoUtilities
+            .roundsForErrorProbability(
+                    CryptoUtilities.DEFAULT_ERROR_PROBABILITY);
+
+    /**
+     * Index of the generation stage.
+     */
+    private static final int GENERATION = 0;
+
+    /**
+     * Index of the sieve stage.
+     */
+    private static final int SIEVE = 1;
+
+    /**
+     * Index of the trial division stage.
+     */
+    private static final int TRIAL_DIVISION = 2;
+
+    /**
+     * Index of the Miller-Rabin stage.
+     */
+    private static final int MILLER_RABIN = 3;
+
+    /**
+     * Number of stages.
+     */
+    private static final int STAGES = 4;
+
+    /**
+     * Bit length of the generated primes.
+     */
+    private final int bits;
+
+    /**
+     * Worker threads per stage, in pipeline order.
+     */
+    private final int[] workers;
+
+    /**
+     * Capacity of each queue between stages.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Metrics of each stage, in pipeline order; refreshed by every run.
+     */
+    private final StageMetrics[] metrics;
+
+    /**
+     * Throughput counters of one pipeline stage.
+     */
+    public static final class StageMetrics {
+
+        /**
+         * Name of the stage.
+         */
+        private final String name;
+
+        /**
+         * Number of items the stage took in.
+         */
+        private final AtomicLong in = new AtomicLong();
+
+        /**
+         * Number of items the stage passed on.
+         */
+        private final AtomicLong out = new AtomicLong();
+
+        /**
+         * Total time spent by the stage's workers on items, excluding time
+         * blocked on queues.
+         */
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        /**
+         * Wall-clock duration of the last run.
+         */
+        private volatile long wallNanos;
+
+        /**
+         * Constructs empty metrics for stage {@code name}.
+         *
+         * @param name
+         *            name of the stage
+         */
+        private StageMetrics(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Reports the name of the stage.
+         *
+         * @return name of the stage
+         */
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * Reports the number of items the stage took in.
+         *
+         * @return items in
+         */
+        public long itemsIn() {
+            return this.in.get();
+        }
+
+        /**
+         * Reports the number of items the stage passed on.
+         *
+         * @return items out
+         */
+        public long itemsOut() {
+            return this.out.get();
+        }
+
+        /**
+         * Reports the number of items the stage rejected.
+         *
+         * @return items in - items out
+         */
+        public long rejected() {
+            return this.in.get() - this.out.get();
+        }
+
+        /**
+         * Reports the total time the stage's workers spent processing items.
+         *
+         * @return busy time in nanoseconds
+         */
+        public long busyNanos() {
+            return this.busyNanos.get();
+        }
+
+        /**
+         * Reports the stage's output rate over the last run.
+         *
+         * @return items passed on per second of wall-clock time
+         */
+        public double throughput() {
+            final double nanosPerSecond = 1e9;
+            double result = 0;
+            if (this.wallNanos > 0) {
+                result = this.out.get() * nanosPerSecond / this.wallNanos;
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            final double nanosPerMilli = 1e6;
+            return String.format("%s: in=%d out=%d busy=%.1fms %.1f/s",
+                    this.name, this.itemsIn(), this.itemsOut(),
+                    this.busyNanos() / nanosPerMilli, this.throughput());
+        }
+
+    }
+
+    /**
+     * Constructs a pipeline for primes of {@code bits} bits with one worker
+     * for generation and one per available processor for each later stage.
+     *
+     * @param bits
+     *            bit length of the generated primes
+     * @requires bits >= MIN_BITS
+     */
+    public PrimeGenerationPipeline(int bits) {
+        this(bits, defaultWorkers(), 2 * Runtime.getRuntime()
+                .availableProcessors());
+    }
+
+    /**
+     * Constructs a pipeline for primes of {@code bits} bits.
+     *
+     * @param bits
+     *            bit length of the generated primes
+     * @param workers
+     *            worker threads for the generation, sieve, trial division,
+     *            and Miller-Rabin stages, in that order
+     * @param queueCapacity
+     *            capacity of each queue between stages
+     * @requires <pre>
+     * bits >= MIN_BITS  and  |workers| = 4  and
+     * [every entry of workers is positive]  and  queueCapacity > 0
+     * </pre>
+     */
+    public PrimeGenerationPipeline(int bits, int[] workers,
+            int queueCapacity) {
+        assert bits >= MIN_BITS : "Violation of: bits >= MIN_BITS";
+        assert workers.length == STAGES : "Violation of: |workers| = 4";
+        assert queueCapacity > 0 : "Violation of: queueCapacity > 0";
+        this.bits = bits;
+        this.workers = workers.clone();
+        this.queueCapacity = queueCapacity;
+        this.metrics = new StageMetrics[STAGES];
+        this.resetMetrics();
+    }
+
+    /**
+     * Replaces the metrics of every stage with zeroed ones.
+     */
+    private void resetMetrics() {
+        this.metrics[GENERATION] = new StageMetrics("generation");
+        this.metrics[SIEVE] = new StageMetrics("sieve");
+        this.metrics[TRIAL_DIVISION] = new StageMetrics("trial division");
+        this.metrics[MILLER_RABIN] = new StageMetrics("Miller-Rabin");
+    }
+
+    /**
+     * Returns the default worker counts: one generator, and one worker per
+     * available processor for each filtering stage.
+     *
+     * @return worker counts per stage
+     */
+    private static int[] defaultWorkers() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new int[] { 1, cores, cores, cores };
+    }
+
+    /**
+     * Returns {@code count} likely primes of exactly {@code bits} bits.
+     *
+     * @param count
+     *            number of primes wanted
+     * @return the primes, in the order they were found
+     * @throws IllegalStateException
+     *             if interrupted while waiting, or if a stage worker fails
+     * @requires count >= 0
+     * @ensures <pre>
+     * |generate| = count  and
+     * for all p in generate
+     *   (2^(bits-1) <= p < 2^bits  and  [p is very likely a prime number])
+     * </pre>
+     */
+    public NaturalNumber[] generate(int count) {
+        assert count >= 0 : "Violation of: count >= 0";
+        this.resetMetrics();
+        List<NaturalNumber> found = new ArrayList<>();
+        if (count == 0) {
+            return new NaturalNumber[0];
+        }
+
+        BlockingQueue<NaturalNumber> toSieve = new ArrayBlockingQueue<>(
+                this.queueCapacity);
+        BlockingQueue<NaturalNumber> toTrial = new ArrayBlockingQueue<>(
+                this.queueCapacity);
+        BlockingQueue<NaturalNumber> toTest = new ArrayBlockingQueue<>(
+                this.queueCapacity);
+        CountDownLatch remaining = new CountDownLatch(count);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService[] pools = new ExecutorService[this.workers.length];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = Executors.newFixedThreadPool(this.workers[i]);
+        }
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < this.workers[GENERATION]; i++) {
+                pools[GENERATION].execute(guarded(
+                        () -> this.generateCandidates(toSieve), failure,
+                        remaining));
+            }
+            for (int i = 0; i < this.workers[SIEVE]; i++) {
+                pools[SIEVE].execute(guarded(() -> this.filter(toSieve,
+                        toTrial, this.metrics[SIEVE],
+                        c -> !SmallPrimeSieve.hasFactorBetween(
+                                Limbs.fromNaturalNumber(c), 0, SIEVE_BOUND)),
+                        failure, remaining));
+            }
+            for (int i = 0; i < this.workers[TRIAL_DIVISION]; i++) {
+                pools[TRIAL_DIVISION].execute(guarded(() -> this.filter(
+                        toTrial, toTest, this.metrics[TRIAL_DIVISION],
+                        c -> !PrimorialTable
+                                .between(SIEVE_BOUND, SmallPrimeSieve.LIMIT)
+                                .sharesFactorWith(
+                                        Limbs.fromNaturalNumber(c))),
+                        failure, remaining));
+            }
+            for (int i = 0; i < this.workers[MILLER_RABIN]; i++) {
+                pools[MILLER_RABIN].execute(guarded(
+                        () -> this.test(toTest, found, count, remaining),
+                        failure, remaining));
+            }
+            remaining.await();
+            if (failure.get() != null) {
+                throw new IllegalStateException("Prime generation failed",
+                        failure.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while generating primes", e);
+        } finally {
+            for (ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+            for (ExecutorService pool : pools) {
+                try {
+                    pool.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        long wall = System.nanoTime() - start;
+        for (StageMetrics m : this.metrics) {
+            m.wallNanos = wall;
+        }
+
+        synchronized (found) {
+            return found.toArray(new NaturalNumber[0]);
+        }
+    }
+
+    /**
+     * Returns a task running the worker loop {@code body} that, if the loop
+     * throws, records the exception in {@code failure} and releases
+     * {@code remaining}, so that generate fails instead of waiting forever
+     * for primes the dead worker will never pass on.
+     *
+     * @param body
+     *            the worker loop
+     * @param failure
+     *            first exception thrown by any worker
+     * @param remaining
+     *            latch generate waits on
+     * @return the guarded task
+     */
+    private static Runnable guarded(Runnable body,
+            AtomicReference<Throwable> failure, CountDownLatch remaining) {
+        return () -> {
+            try {
+                body.run();
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+                while (remaining.getCount() > 0) {
+                    remaining.countDown();
+                }
+            }
+        };
+    }
+
+    /**
+     * Reports the metrics of every stage for the last call to generate.
+     *
+     * @return metrics of the generation, sieve, trial division, and
+     *         Miller-Rabin stages, in that order
+     */
+    public StageMetrics[] stageMetrics() {
+        return this.metrics.clone();
+    }
+
+    /**
+     * Worker loop of the generation stage: puts random odd numbers of the
+     * pipeline's bit length on {@code out} until interrupted.
+     *
+     * @param out
+     *            queue to the sieve stage
+     */
+    private void generateCandidates(BlockingQueue<NaturalNumber> out) {
+        StageMetrics m = this.metrics[GENERATION];
+        //candidates are 2^(bits-1) + [a random number in [0, 2^(bits-1) - 1]]
+        NaturalNumber low = new NaturalNumber2(2);
+        low.power(this.bits - 1);
+        NaturalNumber range = new NaturalNumber2(low);
+        range.decrement();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long t0 = System.nanoTime();
+                NaturalNumber c = CryptoUtilities.randomNumber(range);
+                c.add(low);
+                if (CryptoUtilities.isEven(c)) {
+                    c.increment();
+                }
+                m.in.incrementAndGet();
+                m.busyNanos.addAndGet(System.nanoTime() - t0);
+                out.put(c);
+                m.out.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            //shutting down
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Filter predicate on candidates.
+     */
+    private interface Check {
+
+        /**
+         * Reports whether {@code c} passes the check.
+         *
+         * @param c
+         *            candidate
+         * @return true iff c should move to the next stage
+         */
+        boolean passes(NaturalNumber c);
+
+    }
+
+    /**
+     * Worker loop of a filtering stage: moves candidates that pass
+     * {@code check} from {@code in} to {@code out} until interrupted.
+     *
+     * @param in
+     *            queue from the previous stage
+     * @param out
+     *            queue to the next stage
+     * @param m
+     *            metrics of this stage
+     * @param check
+     *            the filter
+     */
+    private void filter(BlockingQueue<NaturalNumber> in,
+            BlockingQueue<NaturalNumber> out, StageMetrics m, Check check) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                NaturalNumber c = in.take();
+                long t0 = System.nanoTime();
+                m.in.incrementAndGet();
+                boolean passes = check.passes(c);
+                m.busyNanos.addAndGet(System.nanoTime() - t0);
+                if (passes) {
+                    out.put(c);
+                    m.out.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            //shutting down
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Worker loop of the Miller-Rabin stage: adds candidates from {@code in}
+     * that survive ROUNDS witness rounds to {@code found}, counting down
+     * {@code remaining}, until interrupted.
+     *
+     * @param in
+     *            queue from the trial division stage
+     * @param found
+     *            primes found so far; guarded by itself
+     * @param count
+     *            number of primes wanted
+     * @param remaining
+     *            latch released once count primes are found
+     */
+    private void test(BlockingQueue<NaturalNumber> in,
+            List<NaturalNumber> found, int count, CountDownLatch remaining) {
+        StageMetrics m = this.metrics[MILLER_RABIN];
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                NaturalNumber c = in.take();
+                long t0 = System.nanoTime();
+                m.in.incrementAndGet();
+                boolean prime = CryptoUtilities.survivesWitnessRounds(c,
+                        ROUNDS);
+                m.busyNanos.addAndGet(System.nanoTime() - t0);
+                if (prime) {
+                    m.out.incrementAndGet();
+                    synchronized (found) {
+                        if (found.size() < count) {
+                            found.add(c);
+                            remaining.countDown();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            //shutting down
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Product of the odd primes in a range [from, to), packed into words, for
+ * rejecting candidates with a small factor by a single greatest common
+ * divisor instead of one trial division per prime. Tables are built on first
+ * use and shared between all threads.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class PrimorialTable {
+
+    /**
+     * Tables built so far, keyed by from * 2^32 + to.
+     */
+    private static final Map<Long, PrimorialTable> TABLES =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Number of bits in half a word; key packing shift.
+     */
+    private static final int HALF_BITS = 32;
+
+    /**
+     * The primorial as a product of words: each word is the product of a run
+     * of consecutive primes of the range, kept below 2^63.
+     */
+    private final long[] words;
+
+    /**
+     * Exclusive upper bound of the range.
+     */
+    private final int to;
+
+    /**
+     * Constructs the table for the odd primes in [from, to).
+     *
+     * @param from
+     *            inclusive lower bound
+     * @param to
+     *            exclusive upper bound
+     */
+    private PrimorialTable(int from, int to) {
+        int[] primes = SmallPrimeSieve.primesBetween(from, to);
+        long[] packed = new long[primes.length];
+        int count = 0;
+        int i = 0;
+        while (i < primes.length) {
+            long word = primes[i];
+            i++;
+            while (i < primes.length
+                    && word <= Long.MAX_VALUE / primes[i]) {
+                word *= primes[i];
+                i++;
+            }
+            packed[count] = word;
+            count++;
+        }
+        this.words = Arrays.copyOf(packed, count);
+        this.to = to;
+    }
+
+    /**
+     * Returns the shared table for the odd primes in [from, to), building it
+     * on first use.
+     *
+     * @param from
+     *            inclusive lower bound
+     * @param to
+     *            exclusive upper bound
+     * @return the table
+     * @requires 0 <= from <= to <= SmallPrimeSieve.LIMIT
+     */
+    static PrimorialTable between(int from, int to) {
+        return TABLES.computeIfAbsent(((long) from << HALF_BITS) | to,
+                key -> new PrimorialTable(from, to));
+    }
+
+    /**
+     * Reports whether {@code c} has a prime factor in the range of this
+     * table, i.e., whether gcd(c, primorial) /= 1. The primorial is reduced
+     * modulo c word by word, each word costing one in-place Montgomery step
+     * linear in the length of c, so about four primes are handled per pass
+     * over c where trial division makes two passes per prime; the powers of
+     * 2^(-64) these steps leave in the product are coprime to c and do not
+     * change the gcd. The steps only need -c^(-1) mod 2^64, so no Montgomery
+     * context is built for c, and nothing is allocated per word.
+     *
+     * @param c
+     *            limbs of the number to check
+     * @return true iff some odd prime in the range divides c
+     * @requires c is odd and c >= to
+     */
+    boolean sharesFactorWith(long[] c) {
+        assert Limbs.compare(c, new long[] { this.to }) >= 0 : ""
+                + "Violation of: c >= to";
+
+        long[] modulus = Arrays.copyOf(c, Limbs.significantLength(c));
+        long mPrime = MontgomeryContext.negatedInverse(modulus[0]);
+        long[] acc = new long[modulus.length + 1];
+        acc[0] = 1;
+        for (long w : this.words) {
+            MontgomeryContext.multiplyWordInPlace(acc, w, modulus, mPrime);
+        }
+        long[] gcd = LimbGcd.lehmerGcd(acc, modulus);
+        return Limbs.significantLength(gcd) != 1 || gcd[0] != 1;
+    }
+
+}
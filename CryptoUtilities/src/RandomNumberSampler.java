@@ -0,0 +1,157 @@
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Draws natural numbers uniformly distributed in [0, n] from a source of
+ * random 64-bit words, a whole limb at a time. A candidate is rejected at
+ * most once per word comparison, and usually on the top word alone.
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class RandomNumberSampler {
+
+    /**
+     * Source of uniformly distributed 64-bit words.
+     */
+    private final LongSupplier source;
+
+    /**
+     * Seeded generator behind this sampler, if it was made by seeded or
+     * split; null otherwise.
+     */
+    private final SplittableRandom splittable;
+
+    /**
+     * Constructs a sampler drawing words from {@code source}. The sampler is
+     * safe to share between threads exactly when {@code source} is.
+     *
+     * @param source
+     *            source of uniformly distributed 64-bit words
+     */
+    public RandomNumberSampler(LongSupplier source) {
+        assert source != null : "Violation of: source is not null";
+        this.source = source;
+        this.splittable = null;
+    }
+
+    /**
+     * Constructs a sampler drawing words from {@code generator}.
+     *
+     * @param generator
+     *            the seeded generator
+     */
+    private RandomNumberSampler(SplittableRandom generator) {
+        this.source = generator::nextLong;
+        this.splittable = generator;
+    }
+
+    /**
+     * Returns a sampler backed by a {@code SecureRandom}; safe to share
+     * between threads.
+     *
+     * @return new sampler
+     */
+    public static RandomNumberSampler secure() {
+        return new RandomNumberSampler(new SecureRandom()::nextLong);
+    }
+
+    /**
+     * Returns a sampler that draws from the calling thread's
+     * {@code ThreadLocalRandom}; safe to share between threads without
+     * contention.
+     *
+     * @return new sampler
+     */
+    public static RandomNumberSampler threadLocal() {
+        return new RandomNumberSampler(
+                () -> ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Returns a sampler backed by a {@code SplittableRandom} seeded with
+     * {@code seed}, so the numbers it draws are reproducible. Not safe to
+     * share between threads; give each thread its own via split.
+     *
+     * @param seed
+     *            the seed
+     * @return new sampler
+     */
+    public static RandomNumberSampler seeded(long seed) {
+        return new RandomNumberSampler(new SplittableRandom(seed));
+    }
+
+    /**
+     * Returns a new seeded sampler whose numbers are statistically
+     * independent of this one's, for handing to another thread.
+     *
+     * @return new sampler
+     * @requires this was made by seeded or split
+     */
+    public RandomNumberSampler split() {
+        assert this.splittable != null : "Violation of: this is seeded";
+        return new RandomNumberSampler(this.splittable.split());
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n].
+     *
+     * @param n
+     *            top end of interval
+     * @return random number in interval
+     * @ensures <pre>
+     * randomNumber = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public NaturalNumber randomNumber(NaturalNumber n) {
+        NaturalNumber result = n.newInstance();
+        Limbs.setNaturalNumber(result,
+                this.nextAtMost(Limbs.fromNaturalNumber(n)));
+        return result;
+    }
+
+    /**
+     * Returns the limbs of a random number uniformly distributed in the
+     * interval [0, bound].
+     *
+     * @param bound
+     *            limbs of the top end of the interval
+     * @return limbs of a random number in interval, bound.length of them
+     */
+    long[] nextAtMost(long[] bound) {
+        int len = Limbs.significantLength(bound);
+        long[] result = new long[bound.length];
+        if (len > 0) {
+            int topBits = Limbs.bitLength(bound) - (len - 1) * Limbs.LIMB_BITS;
+            long topMask = -1L >>> (Limbs.LIMB_BITS - topBits);
+            long topBound = bound[len - 1];
+            boolean accepted = false;
+            while (!accepted) {
+                /*
+                 * Draw the top word first, masked to the bound's bit length
+                 * so each try succeeds with probability over 1/2; the lower
+                 * words matter only when the top words tie
+                 */
+                long top = this.source.getAsLong() & topMask;
+                int c = Long.compareUnsigned(top, topBound);
+                if (c <= 0) {
+                    result[len - 1] = top;
+                    for (int i = len - 2; i >= 0; i--) {
+                        result[i] = this.source.getAsLong();
+                    }
+                    accepted = c < 0 || Limbs.compare(result, bound) <= 0;
+                }
+                if (!accepted) {
+                    CryptoMetrics.increment(
+                            CryptoMetrics.Counter.RANDOM_REJECTIONS);
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,166 @@
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * RSA key pair: the public key (n, e) together with the private exponent d
+ * and the Chinese Remainder Theorem parameters used by
+ * {@code CryptoUtilities.rsaDecrypt}. Immutable; every accessor returns a
+ * fresh copy.
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class RsaKeyPair {
+
+    /**
+     * The modulus n = p * q.
+     */
+    private final NaturalNumber modulus;
+
+    /**
+     * The public exponent e.
+     */
+    private final NaturalNumber publicExponent;
+
+    /**
+     * The private exponent d = e^(-1) mod (p - 1)(q - 1).
+     */
+    private final NaturalNumber privateExponent;
+
+    /**
+     * One prime factor of the modulus.
+     */
+    private final NaturalNumber p;
+
+    /**
+     * The other prime factor of the modulus.
+     */
+    private final NaturalNumber q;
+
+    /**
+     * d mod (p - 1).
+     */
+    private final NaturalNumber dP;
+
+    /**
+     * d mod (q - 1).
+     */
+    private final NaturalNumber dQ;
+
+    /**
+     * q^(-1) mod p, for Garner's recombination.
+     */
+    private final NaturalNumber qInverse;
+
+    /**
+     * Constructs the key pair with prime factors {@code p} and {@code q} and
+     * public exponent {@code e}.
+     *
+     * @param p
+     *            one prime factor
+     * @param q
+     *            the other prime factor
+     * @param e
+     *            the public exponent
+     * @requires <pre>
+     * [p and q are distinct primes]  and  1 < e < (p - 1)(q - 1)  and
+     * [e and (p - 1)(q - 1) have greatest common divisor 1]
+     * </pre>
+     */
+    public RsaKeyPair(NaturalNumber p, NaturalNumber q, NaturalNumber e) {
+        assert p.compareTo(q) != 0 : "Violation of: p /= q";
+
+        this.p = new NaturalNumber2(p);
+        this.q = new NaturalNumber2(q);
+        this.publicExponent = new NaturalNumber2(e);
+
+        this.modulus = new NaturalNumber2(p);
+        this.modulus.multiply(q);
+
+        NaturalNumber pMinusOne = new NaturalNumber2(p);
+        pMinusOne.decrement();
+        NaturalNumber qMinusOne = new NaturalNumber2(q);
+        qMinusOne.decrement();
+        NaturalNumber phi = new NaturalNumber2(pMinusOne);
+        phi.multiply(qMinusOne);
+        this.privateExponent = CryptoUtilities.modInverse(e, phi);
+
+        //divide leaves the quotient behind, so reduce copies of d
+        this.dP = new NaturalNumber2(this.privateExponent).divide(pMinusOne);
+        this.dQ = new NaturalNumber2(this.privateExponent).divide(qMinusOne);
+        this.qInverse = CryptoUtilities.modInverse(q, p);
+    }
+
+    /**
+     * Returns the modulus n.
+     *
+     * @return n
+     */
+    public NaturalNumber modulus() {
+        return new NaturalNumber2(this.modulus);
+    }
+
+    /**
+     * Returns the public exponent e.
+     *
+     * @return e
+     */
+    public NaturalNumber publicExponent() {
+        return new NaturalNumber2(this.publicExponent);
+    }
+
+    /**
+     * Returns the private exponent d.
+     *
+     * @return d
+     */
+    public NaturalNumber privateExponent() {
+        return new NaturalNumber2(this.privateExponent);
+    }
+
+    /**
+     * Returns the prime factor p.
+     *
+     * @return p
+     */
+    NaturalNumber p() {
+        return new NaturalNumber2(this.p);
+    }
+
+    /**
+     * Returns the prime factor q.
+     *
+     * @return q
+     */
+    NaturalNumber q() {
+        return new NaturalNumber2(this.q);
+    }
+
+    /**
+     * Returns d mod (p - 1).
+     *
+     * @return dP
+     */
+    NaturalNumber dP() {
+        return new NaturalNumber2(this.dP);
+    }
+
+    /**
+     * Returns d mod (q - 1).
+     *
+     * @return dQ
+     */
+    NaturalNumber dQ() {
+        return new NaturalNumber2(this.dQ);
+    }
+
+    /**
+     * Returns q^(-1) mod p.
+     *
+     * @return qInverse
+     */
+    NaturalNumber qInverse() {
+        return new NaturalNumber2(this.qInverse);
+    }
+
+}
@@ -0,0 +1,416 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Segmented Sieve of Eratosthenes over the odd numbers. The range is cut into
+ * segments small enough for their bitset (one bit per odd number) to stay in
+ * the L1 data cache, and each segment is sieved with the primes up to the
+ * square root of the limit. Counting runs the segments in parallel on a
+ * fork/join pool; listing streams them one at a time, so memory stays at one
+ * segment plus the sieving primes whatever the limit.
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class SegmentedSieve {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SegmentedSieve() {
+    }
+
+    /**
+     * Largest supported limit, 2^50, so the sieving primes stay below 2^25
+     * and the table that finds them takes 32 MiB.
+     */
+    public static final long MAX_LIMIT = 1L << 50;
+
+    /**
+     * Number of bits in a word of the bitset.
+     */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * log2(WORD_BITS).
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Odd numbers per segment: 2^18 bits, i.e., a 32 KiB bitset.
+     */
+    private static final int SEGMENT_BITS = 1 << 18;
+
+    /**
+     * Returns the number of primes below {@code limit}, sieving segments on
+     * every available processor.
+     *
+     * @param limit
+     *            exclusive upper bound
+     * @return |{p prime : p < limit}|
+     * @requires 0 <= limit <= MAX_LIMIT
+     */
+    public static long countPrimesBelow(long limit) {
+        return countPrimesBelow(limit,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the number of primes below {@code limit}, sieving segments on
+     * {@code parallelism} threads.
+     *
+     * @param limit
+     *            exclusive upper bound
+     * @param parallelism
+     *            number of worker threads
+     * @return |{p prime : p < limit}|
+     * @requires 0 <= limit <= MAX_LIMIT and parallelism > 0
+     */
+    public static long countPrimesBelow(long limit, int parallelism) {
+        assert 0 <= limit && limit <= MAX_LIMIT : ""
+                + "Violation of: 0 <= limit <= MAX_LIMIT";
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+
+        long count = 0;
+        if (limit > 2) {
+            int[] sievingPrimes = sievingPrimes(limit);
+            long odds = limit / 2;
+            long segments = (odds + SEGMENT_BITS - 1) / SEGMENT_BITS;
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                //1 + the odd primes; 2 is the only even one
+                count = 1 + pool.invoke(
+                        new CountTask(sievingPrimes, odds, 0, segments));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns an iterator over the primes below {@code limit}, in increasing
+     * order. Segments are sieved as the iteration reaches them.
+     *
+     * @param limit
+     *            exclusive upper bound
+     * @return iterator over {p prime : p < limit}
+     * @requires 0 <= limit <= MAX_LIMIT
+     */
+    public static PrimitiveIterator.OfLong primesBelow(long limit) {
+        assert 0 <= limit && limit <= MAX_LIMIT : ""
+                + "Violation of: 0 <= limit <= MAX_LIMIT";
+
+        return new PrimeIterator(limit);
+    }
+
+    /**
+     * Returns the odd primes below {@code limit}, in increasing order.
+     *
+     * @param limit
+     *            exclusive upper bound
+     * @return odd primes p with 3 <= p < limit
+     * @requires limit >= 0
+     */
+    static int[] oddPrimesBelow(int limit) {
+        int[] primes = new int[limit / 2 + 1];
+        PrimitiveIterator.OfLong it = primesBelow(limit);
+        int count = 0;
+        while (it.hasNext()) {
+            long p = it.nextLong();
+            if (p != 2) {
+                primes[count] = (int) p;
+                count++;
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Returns the odd primes whose squares are below {@code limit}, by a
+     * plain sieve of Eratosthenes over the odd numbers.
+     *
+     * @param limit
+     *            exclusive upper bound of the range to be sieved
+     * @return odd primes p with p^2 < limit, in increasing order
+     * @requires 0 <= limit <= MAX_LIMIT
+     */
+    private static int[] sievingPrimes(long limit) {
+        int bound = (int) Math.sqrt((double) limit) + 1;
+        boolean[] composite = new boolean[bound + 1];
+        int count = 0;
+        for (int i = 3; (long) i * i < limit && i <= bound; i += 2) {
+            if (!composite[i]) {
+                count++;
+                for (long j = (long) i * i; j <= bound; j += 2 * i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        int[] primes = new int[count];
+        int next = 0;
+        for (int i = 3; next < count; i += 2) {
+            if (!composite[i]) {
+                primes[next] = i;
+                next++;
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Sieves the odd numbers 2j + 1 for j in [from, to) into {@code bits}:
+     * bit j - from is set iff 2j + 1 is composite (or 1).
+     *
+     * @param sievingPrimes
+     *            the odd primes up to the square root of 2 * to
+     * @param from
+     *            index of the first odd number of the segment
+     * @param to
+     *            index just past the last odd number of the segment
+     * @param bits
+     *            the bitset, at least (to - from) bits long
+     * @replaces bits
+     * @requires 0 <= from < to and to - from <= SEGMENT_BITS
+     */
+    private static void sieveSegment(int[] sievingPrimes, long from, long to,
+            long[] bits) {
+        Arrays.fill(bits, 0L);
+        if (from == 0) {
+            //1 is not a prime
+            bits[0] = 1L;
+        }
+        for (int p : sievingPrimes) {
+            /*
+             * p^2 is the first multiple left to cross out; odd multiples of p
+             * are p apart in index space
+             */
+            long first = ((long) p * p) / 2;
+            if (first >= to) {
+                break;
+            }
+            long j = first;
+            if (j < from) {
+                long r = (from - first) % p;
+                j = from;
+                if (r != 0) {
+                    j += p - r;
+                }
+            }
+            for (long i = j - from; i < to - from; i += p) {
+                bits[(int) (i >>> WORD_SHIFT)] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Counts the odd primes in segments [first, last) of the range.
+     */
+    private static final class CountTask extends RecursiveTask<Long> {
+
+        /**
+         * Serialization version; tasks are never serialized.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The sieving primes.
+         */
+        private final int[] sievingPrimes;
+
+        /**
+         * Number of odd numbers in the whole range.
+         */
+        private final long odds;
+
+        /**
+         * First segment to count.
+         */
+        private final long first;
+
+        /**
+         * Segment just past the last one to count.
+         */
+        private final long last;
+
+        /**
+         * Constructs the task for segments [first, last).
+         *
+         * @param sievingPrimes
+         *            the sieving primes
+         * @param odds
+         *            number of odd numbers in the whole range
+         * @param first
+         *            first segment
+         * @param last
+         *            segment just past the last one
+         */
+        CountTask(int[] sievingPrimes, long odds, long first, long last) {
+            this.sievingPrimes = sievingPrimes;
+            this.odds = odds;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Long compute() {
+            long count = 0;
+            if (this.last - this.first > 1) {
+                long mid = (this.first + this.last) >>> 1;
+                CountTask left = new CountTask(this.sievingPrimes, this.odds,
+                        this.first, mid);
+                left.fork();
+                count = new CountTask(this.sievingPrimes, this.odds, mid,
+                        this.last).compute() + left.join();
+            } else if (this.last > this.first) {
+                long from = this.first * SEGMENT_BITS;
+                long to = Math.min(from + SEGMENT_BITS, this.odds);
+                long[] bits = new long[SEGMENT_BITS / WORD_BITS];
+                sieveSegment(this.sievingPrimes, from, to, bits);
+                int n = (int) (to - from);
+                int fullWords = n >>> WORD_SHIFT;
+                count = (long) fullWords * WORD_BITS;
+                for (int w = 0; w < fullWords; w++) {
+                    count -= Long.bitCount(bits[w]);
+                }
+                for (int i = fullWords * WORD_BITS; i < n; i++) {
+                    if ((bits[i >>> WORD_SHIFT] & (1L << i)) == 0) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+    }
+
+    /**
+     * Iterator over the primes below a limit, sieving one segment at a time.
+     */
+    private static final class PrimeIterator
+            implements PrimitiveIterator.OfLong {
+
+        /**
+         * The sieving primes.
+         */
+        private final int[] sievingPrimes;
+
+        /**
+         * Number of odd numbers below the limit.
+         */
+        private final long odds;
+
+        /**
+         * Bitset of the current segment.
+         */
+        private final long[] bits = new long[SEGMENT_BITS / WORD_BITS];
+
+        /**
+         * Index of the first odd number of the current segment.
+         */
+        private long from;
+
+        /**
+         * Index just past the last odd number of the current segment.
+         */
+        private long to;
+
+        /**
+         * Index of the next odd number to look at, relative to from.
+         */
+        private int next;
+
+        /**
+         * Whether 2 has yet to be returned.
+         */
+        private boolean two;
+
+        /**
+         * The next prime to return, or 0 if it has yet to be found.
+         */
+        private long pending;
+
+        /**
+         * Constructs the iterator over the primes below {@code limit}.
+         *
+         * @param limit
+         *            exclusive upper bound
+         */
+        PrimeIterator(long limit) {
+            this.sievingPrimes = sievingPrimes(limit);
+            this.odds = limit / 2;
+            this.two = limit > 2;
+            this.from = 0;
+            this.to = 0;
+            this.next = 0;
+            this.pending = 0;
+        }
+
+        /**
+         * Finds the next odd prime, sieving further segments as needed.
+         *
+         * @return the next odd prime, or 0 if there is none
+         */
+        private long advance() {
+            long found = 0;
+            while (found == 0 && this.from + this.next < this.odds) {
+                if (this.from + this.next >= this.to) {
+                    this.from = this.to;
+                    this.to = Math.min(this.from + SEGMENT_BITS, this.odds);
+                    this.next = 0;
+                    sieveSegment(this.sievingPrimes, this.from, this.to,
+                            this.bits);
+                }
+                int n = (int) (this.to - this.from);
+                /*
+                 * Skip whole words of composites, then take the lowest clear
+                 * bit at or after next
+                 */
+                while (found == 0 && this.next < n) {
+                    int w = this.next >>> WORD_SHIFT;
+                    long clear = ~this.bits[w] & (-1L << this.next);
+                    if (clear == 0) {
+                        this.next = (w + 1) << WORD_SHIFT;
+                    } else {
+                        int i = (w << WORD_SHIFT)
+                                + Long.numberOfTrailingZeros(clear);
+                        this.next = i + 1;
+                        if (i < n) {
+                            found = 2 * (this.from + i) + 1;
+                        }
+                    }
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.pending == 0 && !this.two) {
+                this.pending = this.advance();
+            }
+            return this.two || this.pending != 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long p;
+            if (this.two) {
+                this.two = false;
+                p = 2;
+            } else {
+                p = this.pending;
+                this.pending = 0;
+            }
+            return p;
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+import java.util.Arrays;
+
+/**
+ * Incremental sieve over the odd numbers c, c + 2, c + 4, ... that tracks c
+ * modulo each odd prime below {@code LIMIT}, so that candidates with a small
+ * factor can be skipped without any big-number arithmetic.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class SmallPrimeSieve {
+
+    /**
+     * Sieving primes are the odd primes below this bound.
+     */
+    static final int LIMIT = 1 << 15;
+
+    /**
+     * The odd primes below LIMIT, in increasing order.
+     */
+    private static final int[] PRIMES = SegmentedSieve.oddPrimesBelow(LIMIT);
+
+    /**
+     * Current candidate modulo PRIMES[i], for each i.
+     */
+    private final int[] residues;
+
+    /**
+     * Reports the largest sieving prime; candidates above it that have a
+     * zero residue are certainly composite.
+     *
+     * @return largest odd prime below LIMIT
+     */
+    static int largestPrime() {
+        return PRIMES[PRIMES.length - 1];
+    }
+
+    /**
+     * Returns the odd primes p with {@code from <= p < to}.
+     *
+     * @param from
+     *            inclusive lower bound
+     * @param to
+     *            exclusive upper bound
+     * @return the primes, in increasing order
+     * @requires to <= LIMIT
+     */
+    static int[] primesBetween(int from, int to) {
+        assert to <= LIMIT : "Violation of: to <= LIMIT";
+        int lo = 0;
+        while (lo < PRIMES.length && PRIMES[lo] < from) {
+            lo++;
+        }
+        int hi = lo;
+        while (hi < PRIMES.length && PRIMES[hi] < to) {
+            hi++;
+        }
+        return Arrays.copyOfRange(PRIMES, lo, hi);
+    }
+
+    /**
+     * Reports whether {@code c} is divisible by an odd prime p with
+     * {@code from <= p < to}.
+     *
+     * @param c
+     *            limbs of the number to check
+     * @param from
+     *            inclusive lower bound on the primes tried
+     * @param to
+     *            exclusive upper bound on the primes tried
+     * @return true iff some odd prime in [from, to) divides c
+     * @requires to <= LIMIT
+     */
+    static boolean hasFactorBetween(long[] c, int from, int to) {
+        assert to <= LIMIT : "Violation of: to <= LIMIT";
+        boolean found = false;
+        for (int i = 0; i < PRIMES.length && PRIMES[i] < to && !found; i++) {
+            if (PRIMES[i] >= from) {
+                found = residue(c, PRIMES[i]) == 0;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns {@code c} modulo {@code p}.
+     *
+     * @param c
+     *            limbs of the number
+     * @param p
+     *            the modulus
+     * @return c mod p
+     * @requires 0 < p < LIMIT
+     */
+    private static int residue(long[] c, long p) {
+        final int halfBits = 32;
+        final long lowMask = 0xFFFFFFFFL;
+        long r = 0;
+        for (int j = c.length - 1; j >= 0; j--) {
+            r = ((r << halfBits) | (c[j] >>> halfBits)) % p;
+            r = ((r << halfBits) | (c[j] & lowMask)) % p;
+        }
+        return (int) r;
+    }
+
+    /**
+     * Constructs the sieve positioned at candidate {@code c}.
+     *
+     * @param c
+     *            limbs of the first candidate
+     * @requires c is odd
+     */
+    SmallPrimeSieve(long[] c) {
+        this.residues = new int[PRIMES.length];
+        for (int i = 0; i < PRIMES.length; i++) {
+            this.residues[i] = residue(c, PRIMES[i]);
+        }
+    }
+
+    /**
+     * Reports whether the current candidate is divisible by a sieving prime.
+     *
+     * @return true iff some odd prime below LIMIT divides the candidate
+     */
+    boolean hasSmallFactor() {
+        boolean found = false;
+        for (int i = 0; i < this.residues.length && !found; i++) {
+            found = this.residues[i] == 0;
+        }
+        return found;
+    }
+
+    /**
+     * Moves the sieve to the next odd candidate, i.e., adds 2 to it.
+     */
+    void advance() {
+        int[] r = this.residues;
+        for (int i = 0; i < r.length; i++) {
+            int next = r[i] + 2;
+            if (next >= PRIMES[i]) {
+                next -= PRIMES[i];
+            }
+            r[i] = next;
+        }
+    }
+
+}
@@ -1,181 +1,842 @@
-import static org.junit.Assert.assertEquals;
-
-import org.junit.Test;
-
-import components.naturalnumber.NaturalNumber;
-import components.naturalnumber.NaturalNumber2;
-
-/**
- * @author Selin Kirbas
- *
- */
-public class CryptoUtilitiesTest {
-    /**
-     * Tests of reduceToGCD.
-     */
-    @Test
-    public void testReduceToGCD_0_0() {
-        NaturalNumber n = new NaturalNumber2(0);
-        NaturalNumber nExpected = new NaturalNumber2(0);
-        NaturalNumber m = new NaturalNumber2(0);
-        NaturalNumber mExpected = new NaturalNumber2(0);
-        CryptoUtilities.reduceToGCD(n, m);
-        assertEquals(nExpected, n);
-        assertEquals(mExpected, m);
-    }
-
-    @Test
-    public void testReduceToGCD_30_21() {
-        NaturalNumber n = new NaturalNumber2(30);
-        NaturalNumber nExpected = new NaturalNumber2(3);
-        NaturalNumber m = new NaturalNumber2(21);
-        NaturalNumber mExpected = new NaturalNumber2(0);
-        CryptoUtilities.reduceToGCD(n, m);
-        assertEquals(nExpected, n);
-        assertEquals(mExpected, m);
-    }
-
-    @Test
-    public void testReduceToGCD_66_12() {
-        NaturalNumber n = new NaturalNumber2(66);
-        NaturalNumber nExpected = new NaturalNumber2(6);
-        NaturalNumber m = new NaturalNumber2(12);
-        NaturalNumber mExpected = new NaturalNumber2(0);
-        CryptoUtilities.reduceToGCD(n, m);
-        assertEquals(nExpected, n);
-        assertEquals(mExpected, m);
-    }
-
-    /**
-     * Tests of isEven.
-     */
-    @Test
-    public void testIsEven_0() {
-        NaturalNumber n = new NaturalNumber2(0);
-        NaturalNumber nExpected = new NaturalNumber2(0);
-        boolean result = CryptoUtilities.isEven(n);
-        assertEquals(nExpected, n);
-        assertEquals(true, result);
-    }
-
-    @Test
-    public void testIsEven_1() {
-        NaturalNumber n = new NaturalNumber2(1);
-        NaturalNumber nExpected = new NaturalNumber2(1);
-        boolean result = CryptoUtilities.isEven(n);
-        assertEquals(nExpected, n);
-        assertEquals(false, result);
-    }
-
-    @Test
-    public void testIsEven_62() {
-        NaturalNumber n = new NaturalNumber2(62);
-        NaturalNumber nExpected = new NaturalNumber2(62);
-        boolean result = CryptoUtilities.isEven(n);
-        assertEquals(nExpected, n);
-        assertEquals(true, result);
-    }
-
-    @Test
-    public void testIsEven_57() {
-        NaturalNumber n = new NaturalNumber2(57);
-        NaturalNumber nExpected = new NaturalNumber2(57);
-        boolean result = CryptoUtilities.isEven(n);
-        assertEquals(nExpected, n);
-        assertEquals(false, result);
-    }
-
-    /**
-     * Tests of powerMod.
-     */
-    @Test
-    public void testPowerMod_0_0_2() {
-        NaturalNumber n = new NaturalNumber2(0);
-        NaturalNumber nExpected = new NaturalNumber2(1);
-        NaturalNumber p = new NaturalNumber2(0);
-        NaturalNumber pExpected = new NaturalNumber2(0);
-        NaturalNumber m = new NaturalNumber2(2);
-        NaturalNumber mExpected = new NaturalNumber2(2);
-        CryptoUtilities.powerMod(n, p, m);
-        assertEquals(nExpected, n);
-        assertEquals(pExpected, p);
-        assertEquals(mExpected, m);
-    }
-
-    @Test
-    public void testPowerMod_17_18_19() {
-        NaturalNumber n = new NaturalNumber2(17);
-        NaturalNumber nExpected = new NaturalNumber2(1);
-        NaturalNumber p = new NaturalNumber2(18);
-        NaturalNumber pExpected = new NaturalNumber2(18);
-        NaturalNumber m = new NaturalNumber2(19);
-        NaturalNumber mExpected = new NaturalNumber2(19);
-        CryptoUtilities.powerMod(n, p, m);
-        assertEquals(nExpected, n);
-        assertEquals(pExpected, p);
-        assertEquals(mExpected, m);
-    }
-
-    @Test
-    public void testPowerMod_3_9_6() {
-        NaturalNumber n = new NaturalNumber2(3);
-        NaturalNumber nExpected = new NaturalNumber2(3);
-        NaturalNumber p = new NaturalNumber2(9);
-        NaturalNumber pExpected = new NaturalNumber2(9);
-        NaturalNumber m = new NaturalNumber2(6);
-        NaturalNumber mExpected = new NaturalNumber2(6);
-        CryptoUtilities.powerMod(n, p, m);
-        assertEquals(nExpected, n);
-        assertEquals(pExpected, p);
-        assertEquals(mExpected, m);
-    }
-
-    /**
-     * Tests of isWitnessToCompositeness.
-     */
-
-    @Test
-    public void testIsWitnessToCompositeness_2_5() {
-        NaturalNumber w = new NaturalNumber2(2);
-        NaturalNumber wExpected = new NaturalNumber2(2);
-        NaturalNumber n = new NaturalNumber2(5);
-        NaturalNumber nExpected = new NaturalNumber2(5);
-        boolean result = CryptoUtilities.isWitnessToCompositeness(w, n);
-        assertEquals(wExpected, w);
-        assertEquals(nExpected, n);
-        assertEquals(false, result);
-    }
-
-    /**
-     * Tests of isPrime2.
-     */
-
-    @Test
-    public void testIsPrime2_35() {
-        NaturalNumber n = new NaturalNumber2(35);
-        NaturalNumber nExpected = new NaturalNumber2(35);
-        boolean result = CryptoUtilities.isEven(n);
-        assertEquals(nExpected, n);
-        assertEquals(false, result);
-    }
-
-    /**
-     * Tests of generateNextLikelyPrime.
-     */
-
-    @Test
-    public void testGenerateNextLikelyPrime_7_11() {
-        NaturalNumber n = new NaturalNumber2(7);
-        NaturalNumber nExpected = new NaturalNumber2(11);
-        CryptoUtilities.generateNextLikelyPrime(n);
-        assertEquals(nExpected, n);
-    }
-
-    @Test
-    public void testGenerateNextLikelyPrime_12_13() {
-        NaturalNumber n = new NaturalNumber2(12);
-        NaturalNumber nExpected = new NaturalNumber2(13);
-        CryptoUtilities.generateNextLikelyPrime(n);
-        assertEquals(nExpected, n);
-    }
-}
+import static org.junit.Assert.assertEquals;
+
+import java.util.PrimitiveIterator;
+
+import org.junit.Test;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * @author Selin Kirbas
+ *
+ */
+public class CryptoUtilitiesTest {
+    /**
+     * Tests of randomNumber.
+     */
+    @Test
+    public void testRandomNumber_Seeded_Reproducible() {
+        NaturalNumber n = new NaturalNumber2("123456789012345678901234567890");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "123456789012345678901234567890");
+        RandomNumberSampler first = RandomNumberSampler.seeded(17L);
+        RandomNumberSampler second = RandomNumberSampler.seeded(17L);
+        for (int i = 0; i < 10; i++) {
+            NaturalNumber x = CryptoUtilities.randomNumber(n, first);
+            NaturalNumber y = CryptoUtilities.randomNumber(n, second);
+            assertEquals(x, y);
+            assertEquals(true, x.compareTo(n) <= 0);
+        }
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testRandomNumber_1() {
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        for (int i = 0; i < 10; i++) {
+            NaturalNumber x = CryptoUtilities.randomNumber(n);
+            assertEquals(true, x.compareTo(n) <= 0);
+        }
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests of reduceToGCD.
+     */
+    @Test
+    public void testReduceToGCD_0_0() {
+        NaturalNumber n = new NaturalNumber2(0);
+        NaturalNumber nExpected = new NaturalNumber2(0);
+        NaturalNumber m = new NaturalNumber2(0);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_30_21() {
+        NaturalNumber n = new NaturalNumber2(30);
+        NaturalNumber nExpected = new NaturalNumber2(3);
+        NaturalNumber m = new NaturalNumber2(21);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_66_12() {
+        NaturalNumber n = new NaturalNumber2(66);
+        NaturalNumber nExpected = new NaturalNumber2(6);
+        NaturalNumber m = new NaturalNumber2(12);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_Binary_Large() {
+        NaturalNumber n = new NaturalNumber2(
+                "8075323118233071899646933143225079285642938160326710796886844848216004009113962938368");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "977152105838249390153394796306186939056825750334707524935090176");
+        NaturalNumber m = new NaturalNumber2(
+                "2213056486296781900527242322613208027177700690237469928053570429249306402750464");
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, CryptoUtilities.GcdStrategy.BINARY);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_Lehmer_Large() {
+        NaturalNumber n = new NaturalNumber2(
+                "8075323118233071899646933143225079285642938160326710796886844848216004009113962938368");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "977152105838249390153394796306186939056825750334707524935090176");
+        NaturalNumber m = new NaturalNumber2(
+                "2213056486296781900527242322613208027177700690237469928053570429249306402750464");
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, CryptoUtilities.GcdStrategy.LEHMER);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_Lehmer_30_21() {
+        NaturalNumber n = new NaturalNumber2(30);
+        NaturalNumber nExpected = new NaturalNumber2(3);
+        NaturalNumber m = new NaturalNumber2(21);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m, CryptoUtilities.GcdStrategy.LEHMER);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests of modInverse.
+     */
+    @Test
+    public void testModInverse_17_3120() {
+        NaturalNumber a = new NaturalNumber2(17);
+        NaturalNumber aExpected = new NaturalNumber2(17);
+        NaturalNumber m = new NaturalNumber2(3120);
+        NaturalNumber mExpected = new NaturalNumber2(3120);
+        NaturalNumber inverse = CryptoUtilities.modInverse(a, m);
+        assertEquals(new NaturalNumber2(2753), inverse);
+        assertEquals(aExpected, a);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Tests of isEven.
+     */
+    @Test
+    public void testIsEven_0() {
+        NaturalNumber n = new NaturalNumber2(0);
+        NaturalNumber nExpected = new NaturalNumber2(0);
+        boolean result = CryptoUtilities.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsEven_1() {
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        boolean result = CryptoUtilities.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsEven_62() {
+        NaturalNumber n = new NaturalNumber2(62);
+        NaturalNumber nExpected = new NaturalNumber2(62);
+        boolean result = CryptoUtilities.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsEven_57() {
+        NaturalNumber n = new NaturalNumber2(57);
+        NaturalNumber nExpected = new NaturalNumber2(57);
+        boolean result = CryptoUtilities.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests of powerMod.
+     */
+    @Test
+    public void testPowerMod_0_0_2() {
+        NaturalNumber n = new NaturalNumber2(0);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(0);
+        NaturalNumber pExpected = new NaturalNumber2(0);
+        NaturalNumber m = new NaturalNumber2(2);
+        NaturalNumber mExpected = new NaturalNumber2(2);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_17_18_19() {
+        NaturalNumber n = new NaturalNumber2(17);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(18);
+        NaturalNumber pExpected = new NaturalNumber2(18);
+        NaturalNumber m = new NaturalNumber2(19);
+        NaturalNumber mExpected = new NaturalNumber2(19);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_3_9_6() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(3);
+        NaturalNumber p = new NaturalNumber2(9);
+        NaturalNumber pExpected = new NaturalNumber2(9);
+        NaturalNumber m = new NaturalNumber2(6);
+        NaturalNumber mExpected = new NaturalNumber2(6);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_3_Mersenne89Minus1_Mersenne89() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2("618970019642690137449562110");
+        NaturalNumber pExpected = new NaturalNumber2(
+                "618970019642690137449562110");
+        NaturalNumber m = new NaturalNumber2("618970019642690137449562111");
+        NaturalNumber mExpected = new NaturalNumber2(
+                "618970019642690137449562111");
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_LargeBaseAboveModulus() {
+        NaturalNumber n = new NaturalNumber2("123456789012345678901234567890");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "3078284641028664787690505");
+        NaturalNumber p = new NaturalNumber2("98765432109876543210");
+        NaturalNumber pExpected = new NaturalNumber2("98765432109876543210");
+        NaturalNumber m = new NaturalNumber2("10000000000000000000000013");
+        NaturalNumber mExpected = new NaturalNumber2(
+                "10000000000000000000000013");
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_Windowed_1_And_5_Agree() {
+        NaturalNumber m = new NaturalNumber2("10000000000000000000000013");
+        NaturalNumber p = new NaturalNumber2("98765432109876543210");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "3078284641028664787690505");
+        NaturalNumber n1 = new NaturalNumber2(
+                "123456789012345678901234567890");
+        NaturalNumber n5 = new NaturalNumber2(
+                "123456789012345678901234567890");
+        CryptoUtilities.powerMod(n1, p, m, 1);
+        CryptoUtilities.powerMod(n5, p, m, 5);
+        assertEquals(nExpected, n1);
+        assertEquals(nExpected, n5);
+    }
+
+    /**
+     * Tests of powerModConstantTime.
+     */
+
+    @Test
+    public void testPowerModConstantTime_2_10_1001() {
+        NaturalNumber n = new NaturalNumber2(2);
+        NaturalNumber nExpected = new NaturalNumber2(23);
+        NaturalNumber p = new NaturalNumber2(10);
+        NaturalNumber m = new NaturalNumber2(1001);
+        CryptoUtilities.powerModConstantTime(n, p, m);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testPowerModConstantTime_ZeroExponent() {
+        NaturalNumber n = new NaturalNumber2(5);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(0);
+        NaturalNumber m = new NaturalNumber2(7);
+        CryptoUtilities.powerModConstantTime(n, p, m);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testPowerModConstantTime_MatchesPowerMod() {
+        NaturalNumber m = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber p = new NaturalNumber2(
+                "340282366920938463463374607431768211455");
+        NaturalNumber n = new NaturalNumber2(
+                "98765432109876543210987654321098765432109876543210");
+        NaturalNumber nExpected = new NaturalNumber2(n);
+        CryptoUtilities.powerMod(nExpected, p, m);
+        CryptoUtilities.powerModConstantTime(n, p, m);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests of powerModBatch.
+     */
+
+    @Test
+    public void testPowerModBatch_LargeOddModulus() {
+        NaturalNumber m = new NaturalNumber2("618970019642690137449562111");
+        NaturalNumber[] bases = new NaturalNumber[10];
+        NaturalNumber[] exponents = new NaturalNumber[10];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = new NaturalNumber2("12345678901234567890" + i);
+            exponents[i] = new NaturalNumber2("98765432109876543210" + i);
+        }
+        NaturalNumber[] results = CryptoUtilities.powerModBatch(bases,
+                exponents, m, 3);
+        assertEquals(bases.length, results.length);
+        for (int i = 0; i < bases.length; i++) {
+            NaturalNumber expected = new NaturalNumber2(bases[i]);
+            CryptoUtilities.powerMod(expected, exponents[i], m);
+            assertEquals(expected, results[i]);
+            assertEquals(new NaturalNumber2("12345678901234567890" + i),
+                    bases[i]);
+        }
+    }
+
+    @Test
+    public void testPowerModBatch_EvenModulus() {
+        NaturalNumber m = new NaturalNumber2(100);
+        NaturalNumber[] bases = { new NaturalNumber2(7), new NaturalNumber2(3),
+            new NaturalNumber2(250) };
+        NaturalNumber[] exponents = { new NaturalNumber2(2),
+            new NaturalNumber2(5), new NaturalNumber2(0) };
+        NaturalNumber[] results = CryptoUtilities.powerModBatch(bases,
+                exponents, m, 2);
+        assertEquals(new NaturalNumber2(49), results[0]);
+        assertEquals(new NaturalNumber2(43), results[1]);
+        assertEquals(new NaturalNumber2(1), results[2]);
+    }
+
+    /**
+     * Tests of isWitnessToCompositeness.
+     */
+
+    @Test
+    public void testIsWitnessToCompositeness_2_5() {
+        NaturalNumber w = new NaturalNumber2(2);
+        NaturalNumber wExpected = new NaturalNumber2(2);
+        NaturalNumber n = new NaturalNumber2(5);
+        NaturalNumber nExpected = new NaturalNumber2(5);
+        boolean result = CryptoUtilities.isWitnessToCompositeness(w, n);
+        assertEquals(wExpected, w);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests of isStrongWitnessToCompositeness.
+     */
+
+    @Test
+    public void testIsStrongWitnessToCompositeness_2_561() {
+        NaturalNumber w = new NaturalNumber2(2);
+        NaturalNumber wExpected = new NaturalNumber2(2);
+        NaturalNumber n = new NaturalNumber2(561);
+        NaturalNumber nExpected = new NaturalNumber2(561);
+        boolean result = CryptoUtilities.isStrongWitnessToCompositeness(w, n);
+        assertEquals(wExpected, w);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsStrongWitnessToCompositeness_2_2047() {
+        //2047 = 23 * 89 is the smallest strong pseudoprime to base 2
+        NaturalNumber w = new NaturalNumber2(2);
+        NaturalNumber n = new NaturalNumber2(2047);
+        boolean result = CryptoUtilities.isStrongWitnessToCompositeness(w, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsStrongWitnessToCompositeness_3_Mersenne89() {
+        NaturalNumber w = new NaturalNumber2(3);
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        boolean result = CryptoUtilities.isStrongWitnessToCompositeness(w, n);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests of roundsForErrorProbability.
+     */
+
+    @Test
+    public void testRoundsForErrorProbability_2ToMinus50() {
+        assertEquals(25, CryptoUtilities.roundsForErrorProbability(0x1p-50));
+    }
+
+    @Test
+    public void testRoundsForErrorProbability_Half() {
+        assertEquals(1, CryptoUtilities.roundsForErrorProbability(0.5));
+    }
+
+    /**
+     * Tests of isPrime2.
+     */
+
+    @Test
+    public void testIsPrime2_35() {
+        NaturalNumber n = new NaturalNumber2(35);
+        NaturalNumber nExpected = new NaturalNumber2(35);
+        boolean result = CryptoUtilities.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsPrime2_MaxPrimeBelow2To64() {
+        NaturalNumber n = new NaturalNumber2("18446744073709551557");
+        NaturalNumber nExpected = new NaturalNumber2("18446744073709551557");
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsPrime2_StrongPseudoprime3825123056546413051() {
+        NaturalNumber n = new NaturalNumber2("3825123056546413051");
+        NaturalNumber nExpected = new NaturalNumber2("3825123056546413051");
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsPrime2_Mersenne89_ErrorProbability() {
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "618970019642690137449562111");
+        boolean result = CryptoUtilities.isPrime2(n, 0x1p-80);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsPrime2_3TimesMersenne89() {
+        NaturalNumber n = new NaturalNumber2("1856910058928070412348686333");
+        boolean result = CryptoUtilities.isPrime2(n, 0.25);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsPrime2_Mersenne127_Twice() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber nExpected = new NaturalNumber2(n);
+        assertEquals(true, CryptoUtilities.isPrime2(n));
+        assertEquals(true, CryptoUtilities.isPrime2(n, 0x1p-100));
+        assertEquals(true, CryptoUtilities.isPrime2(n));
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testIsPrime2_Mersenne61TimesMersenne89() {
+        //no factor below 2^15, so only Miller-Rabin can reject it
+        NaturalNumber n = new NaturalNumber2(
+                "1427247692705959880439315947500961989719490561");
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests of isPrime1.
+     */
+
+    @Test
+    public void testSurvivesWitnessRounds_Mersenne89_Twice_NoCache() {
+        NaturalNumber n = new NaturalNumber2("618970019642690137449562111");
+        NaturalNumber nExpected = new NaturalNumber2(n);
+        CryptoMetrics.reset();
+        CryptoMetrics.enable();
+        try {
+            assertEquals(true, CryptoUtilities.survivesWitnessRounds(n, 2));
+            assertEquals(true, CryptoUtilities.survivesWitnessRounds(n, 2));
+        } finally {
+            CryptoMetrics.disable();
+        }
+        CryptoMetrics.Snapshot s = CryptoMetrics.snapshot();
+        assertEquals(nExpected, n);
+        assertEquals(0, s.count(CryptoMetrics.Counter.CACHE_HITS));
+        assertEquals(2 + 2, s.count(CryptoMetrics.Counter.WITNESS_ROUNDS));
+    }
+
+    @Test
+    public void testSurvivesWitnessRounds_3TimesMersenne89() {
+        //rejected by a witness, not by the factor 3
+        NaturalNumber n = new NaturalNumber2("1856910058928070412348686333");
+        CryptoMetrics.reset();
+        CryptoMetrics.enable();
+        try {
+            assertEquals(false, CryptoUtilities.survivesWitnessRounds(n, 2));
+        } finally {
+            CryptoMetrics.disable();
+        }
+        assertEquals(0, CryptoMetrics.snapshot()
+                .count(CryptoMetrics.Counter.PRIMORIAL_REJECTIONS));
+    }
+
+    @Test
+    public void testIsPrime1_561() {
+        NaturalNumber n = new NaturalNumber2(561);
+        NaturalNumber nExpected = new NaturalNumber2(561);
+        boolean result = CryptoUtilities.isPrime1(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    /**
+     * Tests of isPrime64.
+     */
+
+    @Test
+    public void testIsPrime64_2() {
+        assertEquals(true, CryptoUtilities.isPrime64(2));
+    }
+
+    @Test
+    public void testIsPrime64_1() {
+        assertEquals(false, CryptoUtilities.isPrime64(1));
+    }
+
+    @Test
+    public void testIsPrime64_2To64Minus59() {
+        //2^64 - 59 as an unsigned long
+        assertEquals(true, CryptoUtilities.isPrime64(-59L));
+    }
+
+    /**
+     * Tests of isPrime2Parallel.
+     */
+
+    @Test
+    public void testIsPrime2Parallel_97() {
+        NaturalNumber n = new NaturalNumber2(97);
+        NaturalNumber nExpected = new NaturalNumber2(97);
+        boolean result = CryptoUtilities.isPrime2Parallel(n, 4, 2024L);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsPrime2Parallel_561() {
+        NaturalNumber n = new NaturalNumber2(561);
+        NaturalNumber nExpected = new NaturalNumber2(561);
+        boolean result = CryptoUtilities.isPrime2Parallel(n, 4, 2024L);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsPrime2Parallel_3() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(3);
+        boolean result = CryptoUtilities.isPrime2Parallel(n, 2, 7L);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    /**
+     * Tests of generateNextLikelyPrime.
+     */
+
+    @Test
+    public void testGenerateNextLikelyPrime_7_11() {
+        NaturalNumber n = new NaturalNumber2(7);
+        NaturalNumber nExpected = new NaturalNumber2(11);
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testGenerateNextLikelyPrime_12_13() {
+        NaturalNumber n = new NaturalNumber2(12);
+        NaturalNumber nExpected = new NaturalNumber2(13);
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testGenerateNextLikelyPrime_10ToThe20() {
+        NaturalNumber n = new NaturalNumber2("100000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("100000000000000000039");
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    /**
+     * Tests of generatePrimes.
+     */
+
+    @Test
+    public void testGeneratePrimes_32Bits_3() {
+        NaturalNumber low = new NaturalNumber2("2147483648");
+        NaturalNumber high = new NaturalNumber2("4294967296");
+        NaturalNumber[] primes = CryptoUtilities.generatePrimes(32, 3);
+        assertEquals(3, primes.length);
+        for (NaturalNumber p : primes) {
+            assertEquals(true, p.compareTo(low) >= 0);
+            assertEquals(true, p.compareTo(high) < 0);
+            assertEquals(true, CryptoUtilities.isPrime2(p));
+        }
+    }
+
+    @Test
+    public void testGeneratePrimes_Interrupted_Throws() {
+        Thread.currentThread().interrupt();
+        boolean thrown = false;
+        try {
+            new PrimeGenerationPipeline(32).generate(3);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        assertEquals(true, Thread.interrupted());
+        assertEquals(true, thrown);
+    }
+
+    /**
+     * Tests of countPrimesBelow and primesBelow.
+     */
+
+    @Test
+    public void testCountPrimesBelow_0() {
+        assertEquals(0, CryptoUtilities.countPrimesBelow(0));
+    }
+
+    @Test
+    public void testCountPrimesBelow_3() {
+        assertEquals(1, CryptoUtilities.countPrimesBelow(3));
+    }
+
+    @Test
+    public void testCountPrimesBelow_10ToThe7() {
+        assertEquals(664579, CryptoUtilities.countPrimesBelow(10000000));
+    }
+
+    @Test
+    public void testPrimesBelow_30() {
+        long[] expected = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29 };
+        PrimitiveIterator.OfLong it = CryptoUtilities.primesBelow(30);
+        for (long p : expected) {
+            assertEquals(true, it.hasNext());
+            assertEquals(p, it.nextLong());
+        }
+        assertEquals(false, it.hasNext());
+    }
+
+    @Test
+    public void testPrimesBelow_AcrossSegments() {
+        //2^19 + 1 is past the end of the first segment of odd numbers
+        PrimitiveIterator.OfLong it = CryptoUtilities.primesBelow(1048577);
+        long count = 0;
+        long last = 0;
+        while (it.hasNext()) {
+            last = it.nextLong();
+            count++;
+        }
+        assertEquals(82025, count);
+        assertEquals(1048573, last);
+    }
+
+    /**
+     * Tests of RSA.
+     */
+
+    @Test
+    public void testRsaKeyPair_61_53_17() {
+        RsaKeyPair key = new RsaKeyPair(new NaturalNumber2(61),
+                new NaturalNumber2(53), new NaturalNumber2(17));
+        assertEquals(new NaturalNumber2(3233), key.modulus());
+        assertEquals(new NaturalNumber2(17), key.publicExponent());
+        assertEquals(new NaturalNumber2(2753), key.privateExponent());
+    }
+
+    @Test
+    public void testRsaEncrypt_65() {
+        RsaKeyPair key = new RsaKeyPair(new NaturalNumber2(61),
+                new NaturalNumber2(53), new NaturalNumber2(17));
+        NaturalNumber message = new NaturalNumber2(65);
+        NaturalNumber messageExpected = new NaturalNumber2(2790);
+        CryptoUtilities.rsaEncrypt(message, key);
+        assertEquals(messageExpected, message);
+    }
+
+    @Test
+    public void testRsaDecrypt_2790() {
+        RsaKeyPair key = new RsaKeyPair(new NaturalNumber2(61),
+                new NaturalNumber2(53), new NaturalNumber2(17));
+        NaturalNumber cipher = new NaturalNumber2(2790);
+        NaturalNumber cipherExpected = new NaturalNumber2(65);
+        CryptoUtilities.rsaDecrypt(cipher, key);
+        assertEquals(cipherExpected, cipher);
+    }
+
+    @Test
+    public void testGenerateRsaKeyPair_256Bits_RoundTrip() {
+        RsaKeyPair key = CryptoUtilities.generateRsaKeyPair(256,
+                RandomNumberSampler.seeded(11));
+        NaturalNumber low = new NaturalNumber2(2);
+        low.power(255);
+        NaturalNumber high = new NaturalNumber2(2);
+        high.power(256);
+        assertEquals(true, key.modulus().compareTo(low) >= 0);
+        assertEquals(true, key.modulus().compareTo(high) < 0);
+
+        NaturalNumber message = new NaturalNumber2(
+                "123456789012345678901234567890");
+        NaturalNumber messageExpected = new NaturalNumber2(message);
+        CryptoUtilities.rsaEncrypt(message, key);
+        NaturalNumber plain = new NaturalNumber2(message);
+        CryptoUtilities.powerMod(plain, key.privateExponent(), key.modulus());
+        CryptoUtilities.rsaDecrypt(message, key);
+        assertEquals(messageExpected, message);
+        assertEquals(messageExpected, plain);
+    }
+
+    /**
+     * Tests of CryptoMetrics.
+     */
+    @Test
+    public void testMetrics_PowerMod_Counted() {
+        CryptoMetrics.reset();
+        CryptoMetrics.enable();
+        try {
+            NaturalNumber n = new NaturalNumber2(2);
+            CryptoUtilities.powerMod(n, new NaturalNumber2(10),
+                    new NaturalNumber2(1000));
+            assertEquals(new NaturalNumber2(24), n);
+        } finally {
+            CryptoMetrics.disable();
+        }
+        CryptoMetrics.Snapshot s = CryptoMetrics.snapshot();
+        assertEquals(1, s.count(CryptoMetrics.Counter.POWER_MOD_CALLS));
+        assertEquals(true, s.count(CryptoMetrics.Counter.MULTIPLICATIONS) > 0);
+        assertEquals(true, s.count(CryptoMetrics.Counter.DIVISIONS) > 0);
+        assertEquals(1,
+                s.latency(CryptoMetrics.Operation.POWER_MOD).count());
+    }
+
+    @Test
+    public void testMetrics_ClearPrimalityCaches_NextCallMisses() {
+        NaturalNumber n = new NaturalNumber2("18446744073709551629");
+        CryptoUtilities.isPrime2(n);
+        CryptoMetrics.reset();
+        CryptoMetrics.enable();
+        try {
+            assertEquals(true, CryptoUtilities.isPrime2(n));
+            CryptoUtilities.clearPrimalityCaches();
+            assertEquals(true, CryptoUtilities.isPrime2(n));
+        } finally {
+            CryptoMetrics.disable();
+        }
+        assertEquals(1, CryptoMetrics.snapshot()
+                .count(CryptoMetrics.Counter.CACHE_HITS));
+    }
+
+    @Test
+    public void testMetrics_Disabled_NothingRecorded() {
+        CryptoMetrics.reset();
+        NaturalNumber n = new NaturalNumber2(2);
+        CryptoUtilities.powerMod(n, new NaturalNumber2(10),
+                new NaturalNumber2(1000));
+        CryptoMetrics.Snapshot s = CryptoMetrics.snapshot();
+        assertEquals(false, CryptoMetrics.isEnabled());
+        assertEquals(0, s.count(CryptoMetrics.Counter.POWER_MOD_CALLS));
+        assertEquals(0, s.count(CryptoMetrics.Counter.MULTIPLICATIONS));
+        assertEquals(0,
+                s.latency(CryptoMetrics.Operation.POWER_MOD).count());
+    }
+
+    @Test
+    public void testMetrics_GenerateNextLikelyPrime_Rejections() {
+        CryptoMetrics.reset();
+        CryptoMetrics.enable();
+        NaturalNumber n = new NaturalNumber2("1000000000000000000000000000000");
+        try {
+            CryptoUtilities.generateNextLikelyPrime(n);
+        } finally {
+            CryptoMetrics.disable();
+        }
+        assertEquals(new NaturalNumber2("1000000000000000000000000000057"), n);
+        CryptoMetrics.Snapshot s = CryptoMetrics.snapshot();
+        long rejected = s.count(CryptoMetrics.Counter.SIEVE_REJECTIONS)
+                + s.count(CryptoMetrics.Counter.PRIMALITY_REJECTIONS);
+        assertEquals(true, rejected > 0);
+        assertEquals(1, s.latency(
+                CryptoMetrics.Operation.GENERATE_NEXT_LIKELY_PRIME).count());
+        assertEquals(true,
+                s.latency(CryptoMetrics.Operation.IS_PRIME2).count() >= 1);
+    }
+
+    @Test
+    public void testLatencyHistogram_BucketBounds() {
+        long[] values = { 0, 1, 31, 32, 33, 1000, 123456789L,
+                Long.MAX_VALUE };
+        for (long v : values) {
+            int i = LatencyHistogram.bucketOf(v);
+            long highest = LatencyHistogram.highestValueIn(i);
+            assertEquals(true, i < LatencyHistogram.BUCKETS);
+            assertEquals(true, v <= highest);
+            assertEquals(true, highest - v <= v / 32);
+        }
+    }
+
+    @Test
+    public void testLatencyHistogram_ConcurrentRecord() throws Exception {
+        final int threads = 4;
+        final int perThread = 10000;
+        LatencyHistogram h = new LatencyHistogram();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 1; i <= perThread; i++) {
+                    h.record(i * threads + offset);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        CryptoMetrics.HistogramSnapshot s = h.snapshot();
+        assertEquals(threads * perThread, s.count());
+        assertEquals(threads, s.min());
+        assertEquals(perThread * threads + threads - 1, s.max());
+        h.reset();
+        assertEquals(0, h.snapshot().count());
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.Arrays;
+
+/**
+ * Aho-Corasick automaton over a batch of fragments, for finding every
+ * fragment that is a substring of another one in time linear in the total
+ * length of the batch. The trie is built once; each fragment is then run
+ * through it, and every fragment that ends at some position of another one is
+ * found by following dictionary suffix links from the state reached there.
+ * The trie takes one node per character of the batch, about 50 to 75 bytes
+ * each with the child table, and the batch may total at most
+ * {@code MAX_TOTAL_LENGTH} characters.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class FragmentAutomaton {
+
+    /**
+     * Marks a missing node, owner or link.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The root of the trie: the empty string.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Number of bits a character takes in a child table key.
+     */
+    private static final int CHAR_BITS = 16;
+
+    /**
+     * Largest total length of a batch: the child table, at most half full,
+     * must stay within 2^30 slots.
+     */
+    static final int MAX_TOTAL_LENGTH = (1 << 29) - 1;
+
+    /**
+     * Multiplier spreading child table keys over the table (2^64 / phi).
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The fragments.
+     */
+    private final FragmentSource fragments;
+
+    /**
+     * Node at which each fragment ends.
+     */
+    private final int[] ends;
+
+    /**
+     * Index of the first fragment spelled by each node, or NONE.
+     */
+    private final int[] owner;
+
+    /**
+     * Parent of each node.
+     */
+    private final int[] parent;
+
+    /**
+     * Character on the edge into each node.
+     */
+    private final char[] label;
+
+    /**
+     * Depth of each node, i.e., length of the string it spells.
+     */
+    private final int[] depth;
+
+    /**
+     * Failure link of each node: the node spelling its longest proper suffix
+     * that is in the trie.
+     */
+    private final int[] fail;
+
+    /**
+     * Dictionary suffix link of each node: the nearest node on its failure
+     * chain that spells a fragment, or NONE.
+     */
+    private final int[] output;
+
+    /**
+     * Child table keys, parent * 2^16 + character, or NONE if the slot is
+     * free; open addressing with linear probing.
+     */
+    private final long[] childKeys;
+
+    /**
+     * Child table values: the child node of each key.
+     */
+    private final int[] childNodes;
+
+    /**
+     * Number of bits of a child table index.
+     */
+    private final int tableBits;
+
+    /**
+     * Number of nodes in the trie.
+     */
+    private int nodeCount;
+
+    /**
+     * Builds the automaton for {@code fragments}.
+     *
+     * @param fragments
+     *            the fragments; not copied, and not to be changed while the
+     *            automaton is in use
+     * @throws IllegalStateException
+     *             if the fragments total more than MAX_TOTAL_LENGTH
+     *             characters
+     */
+    FragmentAutomaton(FragmentSource fragments) {
+        this.fragments = fragments;
+        int n = fragments.size();
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += fragments.length(i);
+        }
+        if (total > MAX_TOTAL_LENGTH) {
+            throw new IllegalStateException("Fragments total " + total
+                    + " characters, more than " + MAX_TOTAL_LENGTH);
+        }
+        //one node per character, plus the root
+        int maxNodes = (int) total + 1;
+        this.owner = new int[maxNodes];
+        this.parent = new int[maxNodes];
+        this.label = new char[maxNodes];
+        this.depth = new int[maxNodes];
+        this.fail = new int[maxNodes];
+        this.output = new int[maxNodes];
+        //at most half full, so probes stay short
+        int bits = 1;
+        while ((1 << bits) < 2 * maxNodes) {
+            bits++;
+        }
+        this.tableBits = bits;
+        this.childKeys = new long[1 << bits];
+        this.childNodes = new int[1 << bits];
+        Arrays.fill(this.childKeys, NONE);
+        this.ends = new int[n];
+
+        this.owner[ROOT] = NONE;
+        this.parent[ROOT] = NONE;
+        this.nodeCount = 1;
+        for (int i = 0; i < n; i++) {
+            this.ends[i] = this.insert(i);
+        }
+        this.link();
+    }
+
+    /**
+     * Returns the slot of the child table holding, or to hold, the child of
+     * {@code node} on character {@code c}.
+     *
+     * @param node
+     *            the parent node
+     * @param c
+     *            the character
+     * @return the slot
+     */
+    private int slot(int node, char c) {
+        long key = ((long) node << CHAR_BITS) | c;
+        int mask = this.childKeys.length - 1;
+        int i = (int) ((key * HASH_MULTIPLIER) >>> (Long.SIZE
+                - this.tableBits));
+        while (this.childKeys[i] != NONE && this.childKeys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the child of {@code node} on character {@code c}, or NONE.
+     *
+     * @param node
+     *            the parent node
+     * @param c
+     *            the character
+     * @return the child, or NONE
+     */
+    private int child(int node, char c) {
+        int i = this.slot(node, c);
+        int next = NONE;
+        if (this.childKeys[i] != NONE) {
+            next = this.childNodes[i];
+        }
+        return next;
+    }
+
+    /**
+     * Adds the path spelling fragment {@code index} to the trie.
+     *
+     * @param index
+     *            index of the fragment
+     * @return the node at which it ends
+     */
+    private int insert(int index) {
+        int node = ROOT;
+        int length = this.fragments.length(index);
+        for (int j = 0; j < length; j++) {
+            char c = this.fragments.charAt(index, j);
+            int i = this.slot(node, c);
+            if (this.childKeys[i] == NONE) {
+                int fresh = this.nodeCount;
+                this.nodeCount++;
+                this.childKeys[i] = ((long) node << CHAR_BITS) | c;
+                this.childNodes[i] = fresh;
+                this.owner[fresh] = NONE;
+                this.parent[fresh] = node;
+                this.label[fresh] = c;
+                this.depth[fresh] = this.depth[node] + 1;
+                node = fresh;
+            } else {
+                node = this.childNodes[i];
+            }
+        }
+        if (this.owner[node] == NONE) {
+            this.owner[node] = index;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the state reached from {@code state} on character {@code c}.
+     *
+     * @param state
+     *            the current state
+     * @param c
+     *            the next character
+     * @return the node spelling the longest suffix of (state * c) that is in
+     *         the trie
+     */
+    private int step(int state, char c) {
+        int s = state;
+        int next = this.child(s, c);
+        while (next == NONE && s != ROOT) {
+            s = this.fail[s];
+            next = this.child(s, c);
+        }
+        if (next == NONE) {
+            next = ROOT;
+        }
+        return next;
+    }
+
+    /**
+     * Computes the failure and dictionary suffix links, visiting the nodes
+     * in order of depth so that every link a node needs is already known.
+     */
+    private void link() {
+        int n = this.nodeCount;
+        int maxDepth = 0;
+        for (int v = 0; v < n; v++) {
+            maxDepth = Math.max(maxDepth, this.depth[v]);
+        }
+        //counting sort of the nodes by depth
+        int[] start = new int[maxDepth + 2];
+        for (int v = 0; v < n; v++) {
+            start[this.depth[v] + 1]++;
+        }
+        for (int d = 1; d < start.length; d++) {
+            start[d] += start[d - 1];
+        }
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++) {
+            order[start[this.depth[v]]] = v;
+            start[this.depth[v]]++;
+        }
+
+        this.fail[ROOT] = ROOT;
+        this.output[ROOT] = NONE;
+        for (int k = 1; k < n; k++) {
+            int v = order[k];
+            int p = this.parent[v];
+            int f = ROOT;
+            if (p != ROOT) {
+                f = this.step(this.fail[p], this.label[v]);
+            }
+            this.fail[v] = f;
+            if (this.owner[f] != NONE) {
+                this.output[v] = f;
+            } else {
+                this.output[v] = this.output[f];
+            }
+        }
+    }
+
+    /**
+     * Reports, for each fragment, whether it is redundant: a substring of a
+     * different fragment, or equal to an earlier one.
+     *
+     * @return redundant[i] iff fragment i is redundant
+     */
+    boolean[] redundant() {
+        boolean[] contained = new boolean[this.nodeCount];
+        int n = this.fragments.size();
+        for (int i = 0; i < n; i++) {
+            int end = this.ends[i];
+            if (this.owner[end] == i) {
+                int length = this.fragments.length(i);
+                int state = ROOT;
+                for (int j = 0; j < length; j++) {
+                    state = this.step(state, this.fragments.charAt(i, j));
+                    /*
+                     * Fragments ending here: the state itself unless it is
+                     * this very fragment, then its dictionary suffix links;
+                     * a marked node has its whole chain marked already
+                     */
+                    int hit = this.output[state];
+                    if (this.owner[state] != NONE && state != end) {
+                        hit = state;
+                    }
+                    while (hit != NONE && !contained[hit]) {
+                        contained[hit] = true;
+                        hit = this.output[hit];
+                    }
+                }
+            }
+        }
+        boolean[] redundant = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int end = this.ends[i];
+            redundant[i] = this.owner[end] != i || contained[end];
+        }
+        return redundant;
+    }
+
+}
@@ -0,0 +1,326 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set<String>} represented as an open-addressing hash table with
+ * linear probing, for sets of fragments: add, remove and contains take
+ * expected constant time, where {@code Set1L} takes time linear in the size
+ * of the set. The hash code of each string is kept next to it, so probes
+ * compare ints and only call equals on a hash match; removal shifts the rest
+ * of the probe run back instead of leaving tombstones.
+ *
+ * @convention <pre>
+ * |$this.keys| = |$this.hashes| = 2^k for some k >= 3  and
+ * $this.size = [number of non-null entries of $this.keys]  and
+ * $this.size <= |$this.keys| * 3/4  and
+ * [$this.keys has no duplicates]  and
+ * for all i where ($this.keys[i] /= null)
+ *  ($this.hashes[i] = $this.keys[i].hashCode()  and
+ *   every slot from the home slot of $this.keys[i] up to i, cyclically,
+ *   is non-null)
+ * </pre>
+ * @correspondence this = [set of the non-null entries of $this.keys]
+ *
+ * @author Selin Kirbas
+ *
+ */
+public final class FragmentSet extends SetSecondary<String> {
+
+    /**
+     * Number of slots of a new table.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Multiplier spreading hash codes over the table (2^32 / phi).
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Load factor numerator: the table grows beyond 3/4 full.
+     */
+    private static final int LOAD_NUMERATOR = 3;
+
+    /**
+     * Load factor denominator.
+     */
+    private static final int LOAD_DENOMINATOR = 4;
+
+    /**
+     * The strings, or null for a free slot.
+     */
+    private String[] keys;
+
+    /**
+     * Hash code of the string in each slot.
+     */
+    private int[] hashes;
+
+    /**
+     * Number of strings.
+     */
+    private int size;
+
+    /**
+     * Number of bits of a slot index.
+     */
+    private int bits;
+
+    /**
+     * Slot at which removeAny starts looking.
+     */
+    private int cursor;
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.keys = new String[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.bits = Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+        this.cursor = 0;
+    }
+
+    /**
+     * No-argument constructor.
+     */
+    public FragmentSet() {
+        this.createNewRep();
+    }
+
+    /**
+     * Returns the home slot of hash code {@code hash}.
+     *
+     * @param hash
+     *            the hash code
+     * @return its home slot
+     */
+    private int home(int hash) {
+        return (hash * HASH_MULTIPLIER) >>> (Integer.SIZE - this.bits);
+    }
+
+    /**
+     * Returns the slot holding {@code x}, or the free slot ending its probe
+     * run if x is not in the table.
+     *
+     * @param x
+     *            the string
+     * @param hash
+     *            its hash code
+     * @return the slot
+     */
+    private int find(String x, int hash) {
+        int mask = this.keys.length - 1;
+        int i = this.home(hash);
+        while (this.keys[i] != null
+                && (this.hashes[i] != hash || !this.keys[i].equals(x))) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Doubles the number of slots, re-inserting every string.
+     */
+    private void grow() {
+        String[] oldKeys = this.keys;
+        int[] oldHashes = this.hashes;
+        this.keys = new String[2 * oldKeys.length];
+        this.hashes = new int[2 * oldKeys.length];
+        this.bits++;
+        this.cursor = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int j = this.find(oldKeys[i], oldHashes[i]);
+                this.keys[j] = oldKeys[i];
+                this.hashes[j] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Empties slot {@code i}, then moves back every later string of its probe
+     * run whose home slot allows it, so no probe run is broken.
+     *
+     * @param i
+     *            the slot
+     */
+    private void deleteAt(int i) {
+        int mask = this.keys.length - 1;
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (this.keys[j] != null) {
+            int home = this.home(this.hashes[j]);
+            //move j into hole unless its home lies cyclically in (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                this.keys[hole] = this.keys[j];
+                this.hashes[hole] = this.hashes[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        this.keys[hole] = null;
+        this.size--;
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public Set<String> newInstance() {
+        return new FragmentSet();
+    }
+
+    @Override
+    public void transferFrom(Set<String> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof FragmentSet : ""
+                + "Violation of: source is of dynamic type FragmentSet";
+        FragmentSet localSource = (FragmentSet) source;
+        this.keys = localSource.keys;
+        this.hashes = localSource.hashes;
+        this.size = localSource.size;
+        this.bits = localSource.bits;
+        this.cursor = localSource.cursor;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void add(String x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        if ((this.size + 1) * LOAD_DENOMINATOR > this.keys.length
+                * LOAD_NUMERATOR) {
+            this.grow();
+        }
+        int hash = x.hashCode();
+        int i = this.find(x, hash);
+        this.keys[i] = x;
+        this.hashes[i] = hash;
+        this.size++;
+    }
+
+    @Override
+    public String remove(String x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        int i = this.find(x, x.hashCode());
+        String removed = this.keys[i];
+        this.deleteAt(i);
+        return removed;
+    }
+
+    @Override
+    public String removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        int mask = this.keys.length - 1;
+        int i = this.cursor;
+        while (this.keys[i] == null) {
+            i = (i + 1) & mask;
+        }
+        this.cursor = i;
+        String removed = this.keys[i];
+        this.deleteAt(i);
+        return removed;
+    }
+
+    @Override
+    public boolean contains(String x) {
+        assert x != null : "Violation of: x is not null";
+
+        return this.keys[this.find(x, x.hashCode())] != null;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new FragmentSetIterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code FragmentSet}.
+     */
+    private final class FragmentSetIterator implements Iterator<String> {
+
+        /**
+         * The table being iterated over.
+         */
+        private final String[] table;
+
+        /**
+         * Next slot to look at.
+         */
+        private int next;
+
+        /**
+         * No-argument constructor.
+         */
+        FragmentSetIterator() {
+            this.table = FragmentSet.this.keys;
+            this.next = 0;
+            this.skipFree();
+        }
+
+        /**
+         * Advances next past free slots.
+         */
+        private void skipFree() {
+            while (this.next < this.table.length
+                    && this.table[this.next] == null) {
+                this.next++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < this.table.length;
+        }
+
+        @Override
+        public String next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            String x = this.table[this.next];
+            this.next++;
+            this.skipFree();
+            return x;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
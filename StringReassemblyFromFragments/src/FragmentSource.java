@@ -0,0 +1,83 @@
+/**
+ * Read-only, indexed collection of fragments, letting the fragments live in
+ * whatever storage suits the input (an array of strings, a memory-mapped
+ * file) without copying each one into its own object.
+ *
+ * @author Selin Kirbas
+ *
+ */
+interface FragmentSource {
+
+    /**
+     * Returns the number of fragments.
+     *
+     * @return the number of fragments
+     */
+    int size();
+
+    /**
+     * Returns the length of fragment {@code i}.
+     *
+     * @param i
+     *            index of the fragment
+     * @return its length
+     * @requires 0 <= i < size
+     */
+    int length(int i);
+
+    /**
+     * Returns character {@code j} of fragment {@code i}.
+     *
+     * @param i
+     *            index of the fragment
+     * @param j
+     *            index of the character
+     * @return the character
+     * @requires 0 <= i < size and 0 <= j < length(i)
+     */
+    char charAt(int i, int j);
+
+    /**
+     * Returns fragment {@code i} as a character sequence; a view of the
+     * underlying storage where there is one, so nothing is copied until its
+     * toString is called.
+     *
+     * @param i
+     *            index of the fragment
+     * @return the fragment
+     * @requires 0 <= i < size
+     */
+    CharSequence fragment(int i);
+
+    /**
+     * Returns a source over {@code strings}.
+     *
+     * @param strings
+     *            the fragments; not copied
+     * @return the source
+     */
+    static FragmentSource of(String[] strings) {
+        return new FragmentSource() {
+            @Override
+            public int size() {
+                return strings.length;
+            }
+
+            @Override
+            public int length(int i) {
+                return strings[i].length();
+            }
+
+            @Override
+            public char charAt(int i, int j) {
+                return strings[i].charAt(j);
+            }
+
+            @Override
+            public CharSequence fragment(int i) {
+                return strings[i];
+            }
+        };
+    }
+
+}
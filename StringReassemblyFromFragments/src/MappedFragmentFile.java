@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Fragments read from a file, one per line, without copying them: the file
+ * is memory-mapped and each fragment is a (segment, offset, length) slice of
+ * the mapping. Files of any size are mapped in segments of at most 2^30
+ * bytes, each ending at a line break, so no fragment straddles two segments;
+ * what limits the files linesFromFile can take is the memory and total length
+ * limit of the FragmentAutomaton it runs over the fragments.
+ * Each byte is one character (ISO-8859-1, which covers ASCII); lines end with
+ * "\n", "\r\n" or a lone "\r", as they do for {@code SimpleReader.nextLine}.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class MappedFragmentFile implements FragmentSource {
+
+    /**
+     * Largest number of bytes mapped at once.
+     */
+    private static final int MAX_SEGMENT = 1 << 30;
+
+    /**
+     * Initial capacity of the slice arrays.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Mask turning a signed byte into the character it encodes.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * The mapped segments of the file.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Segment of each fragment.
+     */
+    private int[] segment;
+
+    /**
+     * Offset of each fragment in its segment.
+     */
+    private int[] offset;
+
+    /**
+     * Length of each fragment.
+     */
+    private int[] length;
+
+    /**
+     * Number of fragments.
+     */
+    private int count;
+
+    /**
+     * Maps the file named {@code fileName} and indexes its lines.
+     *
+     * @param fileName
+     *            name of the file
+     * @throws IllegalStateException
+     *             if the file cannot be read, or has a line longer than 2^30
+     *             bytes
+     */
+    MappedFragmentFile(String fileName) {
+        this.segment = new int[INITIAL_CAPACITY];
+        this.offset = new int[INITIAL_CAPACITY];
+        this.length = new int[INITIAL_CAPACITY];
+        this.count = 0;
+        MappedByteBuffer[] mapped = new MappedByteBuffer[1];
+        int segments = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int span = (int) Math.min(MAX_SEGMENT, size - position);
+                MappedByteBuffer buffer = channel
+                        .map(FileChannel.MapMode.READ_ONLY, position, span);
+                //index only whole lines; the rest starts the next segment
+                int end = span;
+                if (position + span < size) {
+                    end = afterLastLineBreak(buffer, span);
+                    if (end == 0) {
+                        throw new IllegalStateException(
+                                "Line longer than 2^30 bytes in " + fileName);
+                    }
+                }
+                if (segments == mapped.length) {
+                    mapped = Arrays.copyOf(mapped, 2 * segments);
+                }
+                mapped[segments] = buffer;
+                this.indexLines(buffer, segments, end);
+                segments++;
+                position += end;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map " + fileName, e);
+        }
+        this.segments = Arrays.copyOf(mapped, segments);
+    }
+
+    /**
+     * Returns the position just after the last line break that lies wholly in
+     * bytes [0, span) of {@code buffer}. A "\r" in the last byte is not
+     * taken, since it may be the first half of a "\r\n".
+     *
+     * @param buffer
+     *            the bytes
+     * @param span
+     *            number of bytes to look at
+     * @return end of the last complete line break, or 0 if there is none
+     * @requires span <= buffer.limit
+     */
+    static int afterLastLineBreak(ByteBuffer buffer, int span) {
+        int end = span;
+        while (end > 0 && buffer.get(end - 1) != '\n'
+                && (buffer.get(end - 1) != '\r' || end == span)) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Records the lines in bytes [0, end) of {@code buffer}.
+     *
+     * @param buffer
+     *            the mapped segment
+     * @param index
+     *            its index
+     * @param end
+     *            number of bytes to index; ends with a complete line
+     *            break, or at the end of the file
+     */
+    private void indexLines(MappedByteBuffer buffer, int index, int end) {
+        int start = 0;
+        while (start < end) {
+            int stop = start;
+            while (stop < end && buffer.get(stop) != '\n'
+                    && buffer.get(stop) != '\r') {
+                stop++;
+            }
+            this.addSlice(index, start, stop - start);
+            start = stop + 1;
+            //"\r\n" is one line break
+            if (stop < end && buffer.get(stop) == '\r' && start < end
+                    && buffer.get(start) == '\n') {
+                start++;
+            }
+        }
+    }
+
+    /**
+     * Appends a fragment.
+     *
+     * @param index
+     *            its segment
+     * @param from
+     *            its offset in the segment
+     * @param size
+     *            its length
+     */
+    private void addSlice(int index, int from, int size) {
+        if (this.count == this.segment.length) {
+            int capacity = 2 * this.count;
+            this.segment = Arrays.copyOf(this.segment, capacity);
+            this.offset = Arrays.copyOf(this.offset, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+        }
+        this.segment[this.count] = index;
+        this.offset[this.count] = from;
+        this.length[this.count] = size;
+        this.count++;
+    }
+
+    @Override
+    public int size() {
+        return this.count;
+    }
+
+    @Override
+    public int length(int i) {
+        return this.length[i];
+    }
+
+    @Override
+    public char charAt(int i, int j) {
+        return (char) (this.segments[this.segment[i]]
+                .get(this.offset[i] + j) & BYTE_MASK);
+    }
+
+    @Override
+    public CharSequence fragment(int i) {
+        return new Slice(i, 0, this.length[i]);
+    }
+
+    /**
+     * View of part of a fragment, reading straight from the mapping.
+     */
+    private final class Slice implements CharSequence {
+
+        /**
+         * Index of the fragment.
+         */
+        private final int fragment;
+
+        /**
+         * First character of the view, in the fragment.
+         */
+        private final int from;
+
+        /**
+         * Number of characters in the view.
+         */
+        private final int size;
+
+        /**
+         * Constructs the view of characters [from, from + size) of fragment
+         * {@code fragment}.
+         *
+         * @param fragment
+         *            index of the fragment
+         * @param from
+         *            first character
+         * @param size
+         *            number of characters
+         */
+        Slice(int fragment, int from, int size) {
+            this.fragment = fragment;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public int length() {
+            return this.size;
+        }
+
+        @Override
+        public char charAt(int index) {
+            assert 0 <= index
+                    && index < this.size : "Violation of: 0 <= index < |this|";
+            return MappedFragmentFile.this.charAt(this.fragment,
+                    this.from + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            assert 0 <= start && start <= end && end <= this.size : ""
+                    + "Violation of: 0 <= start <= end <= |this|";
+            return new Slice(this.fragment, this.from + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[this.size];
+            for (int j = 0; j < this.size; j++) {
+                chars[j] = this.charAt(j);
+            }
+            return new String(chars);
+        }
+
+    }
+
+}
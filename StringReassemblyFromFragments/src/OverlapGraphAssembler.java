@@ -0,0 +1,473 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import components.set.Set;
+
+/**
+ * Greedy assembler over an overlap graph. Every overlap between two strings
+ * of at least a minimum length (1 unless told otherwise) is an edge in a
+ * max-heap; shorter overlaps are never merged along. Edges touching a string
+ * that has been merged away are not removed from the heap but skipped when
+ * they reach the top. Among edges of equal overlap, the one whose first
+ * string, then second string, comes first in lexicographic order wins, so
+ * the result does not depend on set iteration order.
+ * <p>
+ * The graph is built in two phases. First, overlaps of at least a seed length
+ * k are found through a Rabin-Karp index of the k-character prefixes: each
+ * string rolls a k-character window along its end and only the strings whose
+ * prefix hash matches the window are verified, so pairs that share no k-mer
+ * cost nothing. Only once those edges run out, i.e., when the best remaining
+ * overlap is below k, are the overlaps between the (by then far fewer)
+ * strings still in play computed exhaustively. Either way the heap holds
+ * every edge that could be the best one, so the merges are the same as if
+ * every pair were evaluated up front. When the minimum overlap is k itself,
+ * the second phase is not needed, so pairs sharing no k-mer are never
+ * evaluated at all.
+ * <p>
+ * Merging needs no new overlap computations: when x and y, neither a
+ * substring of another string, combine into xy, any string overlapping the
+ * start of xy overlaps the start of x by the same amount, and any string
+ * overlapping the end of xy overlaps the end of y by the same amount; so xy
+ * inherits the edges into x and the edges out of y.
+ * <p>
+ * Each phase can run on several threads: the rows of the graph are split into
+ * chunks, each worker collects the edges of its chunk locally, and the chunks
+ * are merged into the heap in order; since the heap order is total, the
+ * result does not depend on scheduling either.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class OverlapGraphAssembler {
+
+    /**
+     * Number of chunks per worker thread the rows of the graph are split
+     * into, so a worker that finishes early can take another chunk.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Seed length used unless told otherwise: long enough that unrelated
+     * strings rarely share a seed, short enough for most real overlaps.
+     */
+    static final int DEFAULT_SEED_LENGTH = 12;
+
+    /**
+     * Every string seen so far, by id; merged strings get fresh ids.
+     */
+    private final String[] strings;
+
+    /**
+     * Whether each string is still in play, i.e., not merged away.
+     */
+    private final boolean[] alive;
+
+    /**
+     * Edges into each string still in play.
+     */
+    private final List<List<Edge>> into;
+
+    /**
+     * Edges out of each string still in play.
+     */
+    private final List<List<Edge>> outOf;
+
+    /**
+     * Candidate merges, best first; may hold stale edges.
+     */
+    private final PriorityQueue<Edge> edges;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int parallelism;
+
+    /**
+     * Seed length k: overlaps of at least k are found through the index.
+     */
+    private final int seedLength;
+
+    /**
+     * Shortest overlap merged along.
+     */
+    private final int minOverlap;
+
+    /**
+     * Whether overlaps shorter than the seed length, and at least the
+     * minimum overlap, have been computed.
+     */
+    private boolean exhaustive;
+
+    /**
+     * Number of ids handed out.
+     */
+    private int count;
+
+    /**
+     * Builds the overlap graph of {@code strSet} for overlaps of at least
+     * {@code seedLength}, computing it on {@code parallelism} threads.
+     *
+     * @param strSet
+     *            the strings to assemble
+     * @param parallelism
+     *            number of worker threads
+     * @param minOverlap
+     *            shortest overlap to merge along
+     * @param seedLength
+     *            length of the prefixes indexed
+     * @requires <pre>
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and  parallelism > 0  and
+     * 0 < minOverlap <= seedLength
+     * </pre>
+     */
+    OverlapGraphAssembler(Set<String> strSet, int parallelism,
+            int minOverlap, int seedLength) {
+        assert 0 < minOverlap && minOverlap <= seedLength : ""
+                + "Violation of: 0 < minOverlap <= seedLength";
+        //n strings allow at most n - 1 merges
+        int capacity = Math.max(1, 2 * strSet.size() - 1);
+        this.strings = new String[capacity];
+        this.alive = new boolean[capacity];
+        this.into = new ArrayList<>(capacity);
+        this.outOf = new ArrayList<>(capacity);
+        this.edges = new PriorityQueue<>(this::compare);
+        this.parallelism = parallelism;
+        this.seedLength = seedLength;
+        this.minOverlap = minOverlap;
+        this.exhaustive = minOverlap == seedLength;
+        this.count = 0;
+        for (String str : strSet) {
+            this.add(str);
+        }
+        int[] ids = new int[this.count];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        PrefixIndex index = new PrefixIndex(this.strings, this.count,
+                seedLength);
+        this.addEdges(ids, index, null);
+    }
+
+    /**
+     * Computes the edges out of the strings with the given ids on the worker
+     * threads and adds them, in order, to the graph.
+     *
+     * @param ids
+     *            ids of the strings in play
+     * @param index
+     *            index of their prefixes for seeded search, or null
+     * @param prefixes
+     *            prefix function of each string of ids for exhaustive
+     *            search, or null
+     * @requires exactly one of index and prefixes is null
+     */
+    private void addEdges(int[] ids, PrefixIndex index, int[][] prefixes) {
+        int n = ids.length;
+        int chunks = Math.min(n, CHUNKS_PER_THREAD * this.parallelism);
+        if (this.parallelism == 1 || chunks <= 1) {
+            this.addAll(this.rows(ids, 0, n, index, prefixes));
+        } else {
+            int chunkSize = (n + chunks - 1) / chunks;
+            ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try {
+                List<Future<List<Edge>>> pending = new ArrayList<>();
+                for (int from = 0; from < n; from += chunkSize) {
+                    int start = from;
+                    int end = Math.min(from + chunkSize, n);
+                    pending.add(pool.submit(() -> this.rows(ids, start, end,
+                            index, prefixes)));
+                }
+                for (Future<List<Edge>> f : pending) {
+                    this.addAll(f.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while computing overlaps", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(
+                        "Computing overlaps failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Returns the edges out of the strings with ids ids[from, to) into the
+     * strings with ids in {@code ids}; reads the strings only, so rows can be
+     * computed concurrently.
+     *
+     * @param ids
+     *            ids of the strings in play
+     * @param from
+     *            first row
+     * @param to
+     *            row just past the last one
+     * @param index
+     *            index of the prefixes of the strings for seeded search, or
+     *            null
+     * @param prefixes
+     *            prefix function of each string of ids for exhaustive
+     *            search, or null
+     * @return with index, the edges with overlap at least the seed length;
+     *         with prefixes, the edges with overlap at least the minimum
+     * @requires exactly one of index and prefixes is null
+     */
+    private List<Edge> rows(int[] ids, int from, int to, PrefixIndex index,
+            int[][] prefixes) {
+        List<Edge> row = new ArrayList<>();
+        if (index != null) {
+            int[] seen = new int[this.count];
+            Arrays.fill(seen, PrefixIndex.NONE);
+            for (int r = from; r < to; r++) {
+                this.seededRow(ids[r], index, seen, row);
+            }
+        } else {
+            for (int r = from; r < to; r++) {
+                int i = ids[r];
+                for (int c = 0; c < ids.length; c++) {
+                    int j = ids[c];
+                    if (i != j) {
+                        int overlap = StringReassembly.overlap(
+                                this.strings[i], this.strings[j],
+                                prefixes[c]);
+                        if (overlap >= this.minOverlap) {
+                            row.add(new Edge(i, j, overlap));
+                        }
+                    }
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Appends to {@code row} the edges with overlap at least the seed length
+     * out of string {@code i}. Windows are tried from the longest possible
+     * overlap down, so the first verified hit on a string is its overlap.
+     *
+     * @param i
+     *            id of the string
+     * @param index
+     *            index of the prefixes of the strings
+     * @param seen
+     *            scratch: seen[j] = i iff the edge from i to j has been found
+     * @param row
+     *            list to append to
+     * @updates seen, row
+     */
+    private void seededRow(int i, PrefixIndex index, int[] seen,
+            List<Edge> row) {
+        String str = this.strings[i];
+        int length = str.length();
+        int k = this.seedLength;
+        //an overlap is shorter than both strings, so it starts after 0
+        if (length > k) {
+            long hash = index.hash(str, 1);
+            for (int start = 1; start <= length - k; start++) {
+                int overlap = length - start;
+                int j = index.first(hash);
+                while (j != PrefixIndex.NONE) {
+                    if (j != i && seen[j] != i
+                            && overlap < this.strings[j].length()
+                            && str.regionMatches(start, this.strings[j], 0,
+                                    overlap)) {
+                        seen[j] = i;
+                        row.add(new Edge(i, j, overlap));
+                    }
+                    j = index.next(j);
+                }
+                if (start < length - k) {
+                    hash = index.roll(hash, str, start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every edge of {@code row} to the heap and to the edge lists of its
+     * ends.
+     *
+     * @param row
+     *            the edges
+     */
+    private void addAll(List<Edge> row) {
+        for (Edge e : row) {
+            this.edges.add(e);
+            this.outOf.get(e.from).add(e);
+            this.into.get(e.to).add(e);
+        }
+    }
+
+    /**
+     * Orders edges best first: larger overlap, then smaller first string,
+     * then smaller second string.
+     *
+     * @param a
+     *            one edge
+     * @param b
+     *            another edge
+     * @return negative if a is better, positive if b is, 0 if they are the
+     *         same merge
+     */
+    private int compare(Edge a, Edge b) {
+        int c = Integer.compare(b.overlap, a.overlap);
+        if (c == 0) {
+            c = this.strings[a.from].compareTo(this.strings[b.from]);
+        }
+        if (c == 0) {
+            c = this.strings[a.to].compareTo(this.strings[b.to]);
+        }
+        return c;
+    }
+
+    /**
+     * Gives {@code str} the next id.
+     *
+     * @param str
+     *            the string
+     * @return its id
+     */
+    private int add(String str) {
+        int id = this.count;
+        this.count++;
+        this.strings[id] = str;
+        this.alive[id] = true;
+        this.into.add(new ArrayList<>());
+        this.outOf.add(new ArrayList<>());
+        return id;
+    }
+
+    /**
+     * Adds the overlaps shorter than the seed length, and at least the
+     * minimum overlap, between the strings still in play; called once no
+     * edge of seed length or more is left.
+     */
+    private void addShortEdges() {
+        this.exhaustive = true;
+        int n = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (this.alive[i]) {
+                n++;
+            }
+        }
+        int[] ids = new int[n];
+        int[][] prefixes = new int[n][];
+        n = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (this.alive[i]) {
+                ids[n] = i;
+                prefixes[n] = new int[this.strings[i].length()];
+                StringReassembly.prefixFunction(this.strings[i], prefixes[n]);
+                n++;
+                //every edge left in these lists touches a merged string
+                this.into.get(i).clear();
+                this.outOf.get(i).clear();
+            }
+        }
+        this.addEdges(ids, null, prefixes);
+    }
+
+    /**
+     * Merges strings greedily until no two of them overlap, then replaces
+     * the contents of {@code strSet} with what is left.
+     *
+     * @param strSet
+     *            set to receive the result
+     * @replaces strSet
+     */
+    void assembleInto(Set<String> strSet) {
+        while (!this.edges.isEmpty() || !this.exhaustive) {
+            if (this.edges.isEmpty()) {
+                this.addShortEdges();
+            } else {
+                Edge best = this.edges.poll();
+                if (this.alive[best.from] && this.alive[best.to]) {
+                    this.merge(best);
+                }
+            }
+        }
+        strSet.clear();
+        for (int i = 0; i < this.count; i++) {
+            if (this.alive[i]) {
+                strSet.add(this.strings[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the two ends of {@code best} by their combination, which
+     * inherits the edges into the first and out of the second.
+     *
+     * @param best
+     *            the edge to merge along
+     */
+    private void merge(Edge best) {
+        this.alive[best.from] = false;
+        this.alive[best.to] = false;
+        int merged = this.add(StringReassembly.combination(
+                this.strings[best.from], this.strings[best.to],
+                best.overlap));
+        List<Edge> inherited = new ArrayList<>();
+        for (Edge e : this.into.get(best.from)) {
+            if (this.alive[e.from]) {
+                inherited.add(new Edge(e.from, merged, e.overlap));
+            }
+        }
+        for (Edge e : this.outOf.get(best.to)) {
+            if (this.alive[e.to]) {
+                inherited.add(new Edge(merged, e.to, e.overlap));
+            }
+        }
+        this.into.set(best.from, null);
+        this.outOf.set(best.from, null);
+        this.into.set(best.to, null);
+        this.outOf.set(best.to, null);
+        this.addAll(inherited);
+    }
+
+    /**
+     * Candidate merge of two strings.
+     */
+    private static final class Edge {
+
+        /**
+         * Id of the string whose suffix overlaps.
+         */
+        private final int from;
+
+        /**
+         * Id of the string whose prefix overlaps.
+         */
+        private final int to;
+
+        /**
+         * Length of the overlap.
+         */
+        private final int overlap;
+
+        /**
+         * Constructs the edge.
+         *
+         * @param from
+         *            id of the string whose suffix overlaps
+         * @param to
+         *            id of the string whose prefix overlaps
+         * @param overlap
+         *            length of the overlap
+         */
+        Edge(int from, int to, int overlap) {
+            this.from = from;
+            this.to = to;
+            this.overlap = overlap;
+        }
+
+    }
+
+}
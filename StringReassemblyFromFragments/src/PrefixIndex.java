@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+/**
+ * Index from the Rabin-Karp hash of the first k characters of each string to
+ * the strings with that prefix, for finding the candidates for an overlap of
+ * at least k characters by rolling a window of k characters along a string.
+ * Hashes are polynomials in a fixed odd base modulo 2^64, so different
+ * prefixes can share a hash: every hit has to be verified.
+ *
+ * @author Selin Kirbas
+ *
+ */
+final class PrefixIndex {
+
+    /**
+     * Marks a free slot or the end of a chain.
+     */
+    static final int NONE = -1;
+
+    /**
+     * Base of the polynomial hash; odd, so multiplying by it is invertible.
+     */
+    private static final long BASE = 0x100000001B3L;
+
+    /**
+     * Multiplier spreading hashes over the table (2^64 / phi).
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Length of the indexed prefixes.
+     */
+    private final int k;
+
+    /**
+     * BASE^(k-1), the weight of the character leaving the window.
+     */
+    private final long leading;
+
+    /**
+     * Hash in each slot; open addressing with linear probing.
+     */
+    private final long[] keys;
+
+    /**
+     * First id in the chain of each slot, or NONE if the slot is free.
+     */
+    private final int[] heads;
+
+    /**
+     * Next id in the chain of each id, or NONE.
+     */
+    private final int[] next;
+
+    /**
+     * Number of bits of a slot index.
+     */
+    private final int bits;
+
+    /**
+     * Indexes the prefixes of length {@code k} of strings[0, count) longer
+     * than k; shorter strings cannot take an overlap of k or more.
+     *
+     * @param strings
+     *            the strings, by id
+     * @param count
+     *            number of ids
+     * @param k
+     *            prefix length
+     * @requires k > 0 and count <= |strings|
+     */
+    PrefixIndex(String[] strings, int count, int k) {
+        assert k > 0 : "Violation of: k > 0";
+        this.k = k;
+        long power = 1;
+        for (int i = 1; i < k; i++) {
+            power *= BASE;
+        }
+        this.leading = power;
+        int b = 1;
+        while ((1 << b) < 2 * count) {
+            b++;
+        }
+        this.bits = b;
+        this.keys = new long[1 << b];
+        this.heads = new int[1 << b];
+        Arrays.fill(this.heads, NONE);
+        this.next = new int[count];
+        for (int id = count - 1; id >= 0; id--) {
+            this.next[id] = NONE;
+            if (strings[id].length() > k) {
+                int slot = this.slot(this.hash(strings[id], 0));
+                this.keys[slot] = this.hash(strings[id], 0);
+                this.next[id] = this.heads[slot];
+                this.heads[slot] = id;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding, or to hold, {@code hash}.
+     *
+     * @param hash
+     *            the hash
+     * @return the slot
+     */
+    private int slot(long hash) {
+        int mask = this.keys.length - 1;
+        int i = (int) ((hash * HASH_MULTIPLIER) >>> (Long.SIZE - this.bits));
+        while (this.heads[i] != NONE && this.keys[i] != hash) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the hash of str[from, from + k).
+     *
+     * @param str
+     *            the string
+     * @param from
+     *            start of the window
+     * @return its hash
+     * @requires 0 <= from and from + k <= |str|
+     */
+    long hash(String str, int from) {
+        long h = 0;
+        for (int i = from; i < from + this.k; i++) {
+            h = h * BASE + str.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Returns the hash of the window one character further along.
+     *
+     * @param hash
+     *            hash of str[from, from + k)
+     * @param str
+     *            the string
+     * @param from
+     *            start of the window
+     * @return hash of str[from + 1, from + k + 1)
+     * @requires 0 <= from and from + k < |str|
+     */
+    long roll(long hash, String str, int from) {
+        return (hash - str.charAt(from) * this.leading) * BASE
+                + str.charAt(from + this.k);
+    }
+
+    /**
+     * Returns the first id whose prefix has hash {@code hash}, or NONE.
+     *
+     * @param hash
+     *            the hash
+     * @return first id of the chain, or NONE
+     */
+    int first(long hash) {
+        return this.heads[this.slot(hash)];
+    }
+
+    /**
+     * Returns the id after {@code id} in its chain, or NONE.
+     *
+     * @param id
+     *            an id returned by first or next
+     * @return the next id of the chain, or NONE
+     */
+    int next(int id) {
+        return this.next[id];
+    }
+
+}
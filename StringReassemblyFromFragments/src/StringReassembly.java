@@ -1,475 +1,767 @@
-import components.set.Set;
-import components.set.Set1L;
-import components.simplereader.SimpleReader;
-import components.simplereader.SimpleReader1L;
-import components.simplewriter.SimpleWriter;
-import components.simplewriter.SimpleWriter1L;
-
-/**
- * Utility class to support string reassembly from fragments.
- *
- * @author Selin Kirbas
- *
- * @mathdefinitions <pre>
- *
- * OVERLAPS (
- *   s1: string of character,
- *   s2: string of character,
- *   k: integer
- *  ) : boolean is
- *  0 <= k  and  k <= |s1|  and  k <= |s2|  and
- *  s1[|s1|-k, |s1|) = s2[0, k)
- *
- * SUBSTRINGS (
- *   strSet: finite set of string of character,
- *   s: string of character
- *  ) : finite set of string of character is
- *  {t: string of character
- *    where (t is in strSet  and  t is substring of s)
- *   (t)}
- *
- * SUPERSTRINGS (
- *   strSet: finite set of string of character,
- *   s: string of character
- *  ) : finite set of string of character is
- *  {t: string of character
- *    where (t is in strSet  and  s is substring of t)
- *   (t)}
- *
- * CONTAINS_NO_SUBSTRING_PAIRS (
- *   strSet: finite set of string of character
- *  ) : boolean is
- *  for all t: string of character
- *    where (t is in strSet)
- *   (SUBSTRINGS(strSet \ {t}, t) = {})
- *
- * ALL_SUPERSTRINGS (
- *   strSet: finite set of string of character
- *  ) : set of string of character is
- *  {t: string of character
- *    where (SUBSTRINGS(strSet, t) = strSet)
- *   (t)}
- *
- * CONTAINS_NO_OVERLAPPING_PAIRS (
- *   strSet: finite set of string of character
- *  ) : boolean is
- *  for all t1, t2: string of character, k: integer
- *    where (t1 /= t2  and  t1 is in strSet  and  t2 is in strSet  and
- *           1 <= k  and  k <= |s1|  and  k <= |s2|)
- *   (not OVERLAPS(s1, s2, k))
- *
- * </pre>
- */
-public final class StringReassembly {
-
-    /**
-     * Private no-argument constructor to prevent instantiation of this utility
-     * class.
-     */
-    private StringReassembly() {
-    }
-
-    /**
-     * Reports the maximum length of a common suffix of {@code str1} and prefix
-     * of {@code str2}.
-     *
-     * @param str1
-     *            first string
-     * @param str2
-     *            second string
-     * @return maximum overlap between right end of {@code str1} and left end of
-     *         {@code str2}
-     * @requires <pre>
-     * str1 is not substring of str2  and
-     * str2 is not substring of str1
-     * </pre>
-     * @ensures <pre>
-     * OVERLAPS(str1, str2, overlap)  and
-     * for all k: integer
-     *     where (overlap < k  and  k <= |str1|  and  k <= |str2|)
-     *  (not OVERLAPS(str1, str2, k))
-     * </pre>
-     */
-    public static int overlap(String str1, String str2) {
-        assert str1 != null : "Violation of: str1 is not null";
-        assert str2 != null : "Violation of: str2 is not null";
-        assert str2.indexOf(str1) < 0 : "Violation of: "
-        + "str1 is not substring of str2";
-        assert str1.indexOf(str2) < 0 : "Violation of: "
-        + "str2 is not substring of str1";
-        /*
-         * Start with maximum possible overlap and work down until a match is
-         * found; think about it and try it on some examples to see why
-         * iterating in the other direction doesn't work
-         */
-        int maxOverlap = str2.length() - 1;
-        while (!str1.regionMatches(str1.length() - maxOverlap, str2, 0,
-                maxOverlap)) {
-            maxOverlap--;
-        }
-        return maxOverlap;
-    }
-
-    /**
-     * Returns concatenation of {@code str1} and {@code str2} from which one of
-     * the two "copies" of the common string of {@code overlap} characters at
-     * the end of {@code str1} and the beginning of {@code str2} has been
-     * removed.
-     *
-     * @param str1
-     *            first string
-     * @param str2
-     *            second string
-     * @param overlap
-     *            amount of overlap
-     * @return combination with one "copy" of overlap removed
-     * @requires OVERLAPS(str1, str2, overlap)
-     * @ensures combination = str1[0, |str1|-overlap) * str2
-     */
-    public static String combination(String str1, String str2, int overlap) {
-        assert str1 != null : "Violation of: str1 is not null";
-        assert str2 != null : "Violation of: str2 is not null";
-        assert 0 <= overlap && overlap <= str1.length()
-                && overlap <= str2.length()
-                && str1.regionMatches(str1.length() - overlap, str2, 0,
-                        overlap) : ""
-                        + "Violation of: OVERLAPS(str1, str2, overlap)";
-
-        /*
-         * Hint: consider using substring (a String method)
-         */
-
-        //set up variable to remove the overlap from the first string so str2
-        //is the only one with the overlapping characters
-        int remove = str1.length() - overlap;
-
-        //use String concat() method to link the strings together
-        String con = str1.substring(0, remove).concat(str2);
-
-        return con;
-    }
-
-    /**
-     * Adds {@code str} to {@code strSet} if and only if it is not a substring
-     * of any string already in {@code strSet}; and if it is added, also removes
-     * from {@code strSet} any string already in {@code strSet} that is a
-     * substring of {@code str}.
-     *
-     * @param strSet
-     *            set to consider adding to
-     * @param str
-     *            string to consider adding
-     * @updates strSet
-     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
-     * @ensures <pre>
-     * if SUPERSTRINGS(#strSet, str) = {}
-     *  then strSet = #strSet union {str} \ SUBSTRINGS(#strSet, str)
-     *  else strSet = #strSet
-     * </pre>
-     */
-    public static void addToSetAvoidingSubstrings(Set<String> strSet,
-            String str) {
-        assert strSet != null : "Violation of: strSet is not null";
-        assert str != null : "Violation of: str is not null";
-        /*
-         * Note: Precondition not checked!
-         */
-
-        //create new set to store possible substrings in
-        Set<String> substring = new Set1L<>();
-
-        //check if str is a substring of any strings in the set
-        for (String inSet : strSet) {
-            if (inSet.contains(str)) {
-                return; //do nothing else since we can't add the string if its a substring
-            }
-        }
-
-        //add it if its not a substring
-        strSet.add(str);
-
-
-        //set up to check if any string in set is a substring of str
-        for (String inSet : strSet) {
-            if (inSet.equals(str)) {
-                substring.add(inSet);
-            } else {
-                if (str.contains(inSet)) {
-                    substring.add(inSet);
-                }
-            }
-        }
-
-        strSet.clear();
-        strSet.add(substring);
-    }
-
-    /**
-     * Returns the set of all individual lines read from {@code input}, except
-     * that any line that is a substring of another is not in the returned set.
-     *
-     * @param input
-     *            source of strings, one per line
-     * @return set of lines read from {@code input}
-     * @requires input.is_open
-     * @ensures <pre>
-     * input.is_open  and  input.content = <>  and
-     * linesFromInput = [maximal set of lines from #input.content such that
-     *                   CONTAINS_NO_SUBSTRING_PAIRS(linesFromInput)]
-     * </pre>
-     */
-    public static Set<String> linesFromInput(SimpleReader input) {
-        assert input != null : "Violation of: input is not null";
-        assert input.isOpen() : "Violation of: input.is_open";
-
-        //set up new set for lines read from input
-        Set<String> set = new Set1L<>();
-
-        //loop to read lines until end of stream has been reached
-        while (!input.atEOS()) {
-
-            //get individual lines
-            String str = input.nextLine();
-
-            //use method so any line that is a substring of another will not be in
-            //returned set
-            addToSetAvoidingSubstrings(set, str);
-
-        }
-
-        return set;
-    }
-
-    /**
-     * Returns the longest overlap between the suffix of one string and the
-     * prefix of another string in {@code strSet}, and identifies the two
-     * strings that achieve that overlap.
-     *
-     * @param strSet
-     *            the set of strings examined
-     * @param bestTwo
-     *            an array containing (upon return) the two strings with the
-     *            largest such overlap between the suffix of {@code bestTwo[0]}
-     *            and the prefix of {@code bestTwo[1]}
-     * @return the amount of overlap between those two strings
-     * @replaces bestTwo[0], bestTwo[1]
-     * @requires <pre>
-     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
-     * bestTwo.length >= 2
-     * </pre>
-     * @ensures <pre>
-     * bestTwo[0] is in strSet  and
-     * bestTwo[1] is in strSet  and
-     * OVERLAPS(bestTwo[0], bestTwo[1], bestOverlap)  and
-     * for all str1, str2: string of character, overlap: integer
-     *     where (str1 is in strSet  and  str2 is in strSet  and
-     *            OVERLAPS(str1, str2, overlap))
-     *   (overlap <= bestOverlap)
-     * </pre>
-     */
-    private static int bestOverlap(Set<String> strSet, String[] bestTwo) {
-        assert strSet != null : "Violation of: strSet is not null";
-        assert bestTwo != null : "Violation of: bestTwo is not null";
-        assert bestTwo.length >= 2 : "Violation of: bestTwo.length >= 2";
-        /*
-         * Note: Rest of precondition not checked!
-         */
-        int bestOverlap = 0;
-        Set<String> processed = strSet.newInstance();
-        while (strSet.size() > 0) {
-            /*
-             * Remove one string from strSet to check against all others
-             */
-            String str0 = strSet.removeAny();
-            for (String str1 : strSet) {
-                /*
-                 * Check str0 and str1 for overlap first in one order...
-                 */
-                int overlapFrom0To1 = overlap(str0, str1);
-                if (overlapFrom0To1 > bestOverlap) {
-                    /*
-                     * Update best overlap found so far, and the two strings
-                     * that produced it
-                     */
-                    bestOverlap = overlapFrom0To1;
-                    bestTwo[0] = str0;
-                    bestTwo[1] = str1;
-                }
-                /*
-                 * ... and then in the other order
-                 */
-                int overlapFrom1To0 = overlap(str1, str0);
-                if (overlapFrom1To0 > bestOverlap) {
-                    /*
-                     * Update best overlap found so far, and the two strings
-                     * that produced it
-                     */
-                    bestOverlap = overlapFrom1To0;
-                    bestTwo[0] = str1;
-                    bestTwo[1] = str0;
-                }
-            }
-            /*
-             * Record that str0 has been checked against every other string in
-             * strSet
-             */
-            processed.add(str0);
-        }
-        /*
-         * Restore strSet and return best overlap
-         */
-        strSet.transferFrom(processed);
-        return bestOverlap;
-    }
-
-    /**
-     * Combines strings in {@code strSet} as much as possible, leaving in it
-     * only strings that have no overlap between a suffix of one string and a
-     * prefix of another. Note: uses a "greedy approach" to assembly, hence may
-     * not result in {@code strSet} being as small a set as possible at the end.
-     *
-     * @param strSet
-     *            set of strings
-     * @updates strSet
-     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
-     * @ensures <pre>
-     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
-     * |strSet| <= |#strSet|  and
-     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
-     * CONTAINS_NO_OVERLAPPING_PAIRS(strSet)
-     * </pre>
-     */
-    public static void assemble(Set<String> strSet) {
-        assert strSet != null : "Violation of: strSet is not null";
-        /*
-         * Note: Precondition not checked!
-         */
-        /*
-         * Combine strings as much possible, being greedy
-         */
-        boolean done = false;
-        while ((strSet.size() > 1) && !done) {
-            String[] bestTwo = new String[2];
-            int bestOverlap = bestOverlap(strSet, bestTwo);
-            if (bestOverlap == 0) {
-                /*
-                 * No overlapping strings remain; can't do any more
-                 */
-                done = true;
-            } else {
-                /*
-                 * Replace the two most-overlapping strings with their
-                 * combination; this can be done with add rather than
-                 * addToSetAvoidingSubstrings because the latter would do the
-                 * same thing (this claim requires justification)
-                 */
-                strSet.remove(bestTwo[0]);
-                strSet.remove(bestTwo[1]);
-                String overlapped = combination(bestTwo[0], bestTwo[1],
-                        bestOverlap);
-                strSet.add(overlapped);
-            }
-        }
-    }
-
-    /**
-     * Prints the string {@code text} to {@code out}, replacing each '~' with a
-     * line separator.
-     *
-     * @param text
-     *            string to be output
-     * @param out
-     *            output stream
-     * @updates out
-     * @requires out.is_open
-     * @ensures <pre>
-     * out.is_open  and
-     * out.content = #out.content *
-     *   [text with each '~' replaced by line separator]
-     * </pre>
-     */
-    public static void printWithLineSeparators(String text, SimpleWriter out) {
-        assert text != null : "Violation of: text is not null";
-        assert out != null : "Violation of: out is not null";
-        assert out.isOpen() : "Violation of: out.is_open";
-
-        //create loop to check every character in the string text
-        for (int i = 0; i < text.length(); i++) {
-
-            //set up variable for each character
-            char c = text.charAt(i);
-
-            //check if the character is a '~'
-            if (c == '~') {
-
-                //if yes, replace with line separator
-                out.println();
-            } else {
-                //if no, print out string normally
-                out.println(c);
-            }
-        }
-    }
-
-    /**
-     * Given a file name (relative to the path where the application is running)
-     * that contains fragments of a single original source text, one fragment
-     * per line, outputs to stdout the result of trying to reassemble the
-     * original text from those fragments using a "greedy assembler". The
-     * result, if reassembly is complete, might be the original text; but this
-     * might not happen because a greedy assembler can make a mistake and end up
-     * predicting the fragments were from a string other than the true original
-     * source text. It can also end up with two or more fragments that are
-     * mutually non-overlapping, in which case it outputs the remaining
-     * fragments, appropriately labelled.
-     *
-     * @param args
-     *            Command-line arguments: not used
-     */
-    public static void main(String[] args) {
-        SimpleReader in = new SimpleReader1L();
-        SimpleWriter out = new SimpleWriter1L();
-        /*
-         * Get input file name
-         */
-        out.print("Input file (with fragments): ");
-        String inputFileName = in.nextLine();
-        SimpleReader inFile = new SimpleReader1L(inputFileName);
-        /*
-         * Get initial fragments from input file
-         */
-        Set<String> fragments = linesFromInput(inFile);
-        /*
-         * Close inFile; we're done with it
-         */
-        inFile.close();
-        /*
-         * Assemble fragments as far as possible
-         */
-        assemble(fragments);
-        /*
-         * Output fully assembled text or remaining fragments
-         */
-        if (fragments.size() == 1) {
-            out.println();
-            String text = fragments.removeAny();
-            printWithLineSeparators(text, out);
-        } else {
-            int fragmentNumber = 0;
-            for (String str : fragments) {
-                fragmentNumber++;
-                out.println();
-                out.println("--------------------");
-                out.println("  -- Fragment #" + fragmentNumber + ": --");
-                out.println("--------------------");
-                printWithLineSeparators(str, out);
-            }
-        }
-        /*
-         * Close input and output streams
-         */
-        in.close();
-        out.close();
-    }
-
-}
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import components.set.Set;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Utility class to support string reassembly from fragments.
+ *
+ * @author Selin Kirbas
+ *
+ * @mathdefinitions <pre>
+ *
+ * OVERLAPS (
+ *   s1: string of character,
+ *   s2: string of character,
+ *   k: integer
+ *  ) : boolean is
+ *  0 <= k  and  k <= |s1|  and  k <= |s2|  and
+ *  s1[|s1|-k, |s1|) = s2[0, k)
+ *
+ * SUBSTRINGS (
+ *   strSet: finite set of string of character,
+ *   s: string of character
+ *  ) : finite set of string of character is
+ *  {t: string of character
+ *    where (t is in strSet  and  t is substring of s)
+ *   (t)}
+ *
+ * SUPERSTRINGS (
+ *   strSet: finite set of string of character,
+ *   s: string of character
+ *  ) : finite set of string of character is
+ *  {t: string of character
+ *    where (t is in strSet  and  s is substring of t)
+ *   (t)}
+ *
+ * CONTAINS_NO_SUBSTRING_PAIRS (
+ *   strSet: finite set of string of character
+ *  ) : boolean is
+ *  for all t: string of character
+ *    where (t is in strSet)
+ *   (SUBSTRINGS(strSet \ {t}, t) = {})
+ *
+ * ALL_SUPERSTRINGS (
+ *   strSet: finite set of string of character
+ *  ) : set of string of character is
+ *  {t: string of character
+ *    where (SUBSTRINGS(strSet, t) = strSet)
+ *   (t)}
+ *
+ * CONTAINS_NO_OVERLAPPING_PAIRS (
+ *   strSet: finite set of string of character
+ *  ) : boolean is
+ *  for all t1, t2: string of character, k: integer
+ *    where (t1 /= t2  and  t1 is in strSet  and  t2 is in strSet  and
+ *           1 <= k  and  k <= |s1|  and  k <= |s2|)
+ *   (not OVERLAPS(s1, s2, k))
+ *
+ * </pre>
+ */
+public final class StringReassembly {
+
+    /**
+     * Size in bytes of the buffer through which printWithLineSeparators writes
+     * to a channel.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 18;
+
+    /**
+     * Private no-argument constructor to prevent instantiation of this utility
+     * class.
+     */
+    private StringReassembly() {
+    }
+
+    /**
+     * Reports the maximum length of a common suffix of {@code str1} and prefix
+     * of {@code str2}.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @return maximum overlap between right end of {@code str1} and left end of
+     *         {@code str2}
+     * @requires <pre>
+     * str1 is not substring of str2  and
+     * str2 is not substring of str1
+     * </pre>
+     * @ensures <pre>
+     * OVERLAPS(str1, str2, overlap)  and
+     * for all k: integer
+     *     where (overlap < k  and  k <= |str1|  and  k <= |str2|)
+     *  (not OVERLAPS(str1, str2, k))
+     * </pre>
+     */
+    public static int overlap(String str1, String str2) {
+        assert str1 != null : "Violation of: str1 is not null";
+        assert str2 != null : "Violation of: str2 is not null";
+        assert str2.indexOf(str1) < 0 : "Violation of: "
+        + "str1 is not substring of str2";
+        assert str1.indexOf(str2) < 0 : "Violation of: "
+        + "str2 is not substring of str1";
+
+        int[] prefix = new int[str2.length()];
+        prefixFunction(str2, prefix);
+        return overlap(str1, str2, prefix);
+    }
+
+    /**
+     * Computes the prefix function of {@code str} into {@code prefix}: entry
+     * i is the length of the longest proper prefix of str[0, i+1) that is
+     * also a suffix of it.
+     *
+     * @param str
+     *            the string
+     * @param prefix
+     *            scratch buffer to hold the prefix function
+     * @replaces prefix[0, |str|)
+     * @requires prefix.length >= |str|
+     * @ensures <pre>
+     * for all i: integer where (0 <= i < |str|)
+     *  (prefix[i] = [length of the longest proper prefix of str[0, i+1)
+     *                that is also a suffix of str[0, i+1)])
+     * </pre>
+     */
+    static void prefixFunction(CharSequence str, int[] prefix) {
+        assert prefix.length >= str.length() : ""
+                + "Violation of: prefix.length >= |str|";
+
+        if (str.length() > 0) {
+            prefix[0] = 0;
+        }
+        int k = 0;
+        for (int i = 1; i < str.length(); i++) {
+            char c = str.charAt(i);
+            while (k > 0 && str.charAt(k) != c) {
+                k = prefix[k - 1];
+            }
+            if (str.charAt(k) == c) {
+                k++;
+            }
+            prefix[i] = k;
+        }
+    }
+
+    /**
+     * Reports the maximum length of a common suffix of {@code str1} and prefix
+     * of {@code str2}, given the prefix function of {@code str2}. Runs the
+     * Knuth-Morris-Pratt matcher for str2 over the last |str2| - 1 characters
+     * of str1, so it takes time linear in |str2| and allocates nothing; the
+     * length matched when the text runs out is the overlap. Either string
+     * may be a view of a MappedFragmentFile.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @param prefix
+     *            prefix function of {@code str2}, as computed by
+     *            prefixFunction
+     * @return maximum overlap between right end of {@code str1} and left end of
+     *         {@code str2}
+     * @requires <pre>
+     * str1 is not substring of str2  and
+     * str2 is not substring of str1  and
+     * prefix[0, |str2|) is the prefix function of str2
+     * </pre>
+     * @ensures <pre>
+     * OVERLAPS(str1, str2, overlap)  and
+     * for all k: integer
+     *     where (overlap < k  and  k <= |str1|  and  k <= |str2|)
+     *  (not OVERLAPS(str1, str2, k))
+     * </pre>
+     */
+    static int overlap(CharSequence str1, CharSequence str2, int[] prefix) {
+        /*
+         * An overlap is shorter than str2, since str2 is not a substring of
+         * str1, so only that many characters at the end of str1 can matter
+         */
+        int from = Math.max(0, str1.length() - (str2.length() - 1));
+        int matched = 0;
+        for (int i = from; i < str1.length(); i++) {
+            char c = str1.charAt(i);
+            while (matched > 0 && str2.charAt(matched) != c) {
+                matched = prefix[matched - 1];
+            }
+            if (str2.charAt(matched) == c) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Returns concatenation of {@code str1} and {@code str2} from which one of
+     * the two "copies" of the common string of {@code overlap} characters at
+     * the end of {@code str1} and the beginning of {@code str2} has been
+     * removed.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @param overlap
+     *            amount of overlap
+     * @return combination with one "copy" of overlap removed
+     * @requires OVERLAPS(str1, str2, overlap)
+     * @ensures combination = str1[0, |str1|-overlap) * str2
+     */
+    public static String combination(String str1, String str2, int overlap) {
+        assert str1 != null : "Violation of: str1 is not null";
+        assert str2 != null : "Violation of: str2 is not null";
+        assert 0 <= overlap && overlap <= str1.length()
+                && overlap <= str2.length()
+                && str1.regionMatches(str1.length() - overlap, str2, 0,
+                        overlap) : ""
+                        + "Violation of: OVERLAPS(str1, str2, overlap)";
+
+        /*
+         * Hint: consider using substring (a String method)
+         */
+
+        //set up variable to remove the overlap from the first string so str2
+        //is the only one with the overlapping characters
+        int remove = str1.length() - overlap;
+
+        //use String concat() method to link the strings together
+        String con = str1.substring(0, remove).concat(str2);
+
+        return con;
+    }
+
+    /**
+     * Adds {@code str} to {@code strSet} if and only if it is not a substring
+     * of any string already in {@code strSet}; and if it is added, also removes
+     * from {@code strSet} any string already in {@code strSet} that is a
+     * substring of {@code str}.
+     *
+     * @param strSet
+     *            set to consider adding to
+     * @param str
+     *            string to consider adding
+     * @updates strSet
+     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
+     * @ensures <pre>
+     * if SUPERSTRINGS(#strSet, str) = {}
+     *  then strSet = #strSet union {str} \ SUBSTRINGS(#strSet, str)
+     *  else strSet = #strSet
+     * </pre>
+     */
+    public static void addToSetAvoidingSubstrings(Set<String> strSet,
+            String str) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert str != null : "Violation of: str is not null";
+        /*
+         * Note: Precondition not checked!
+         */
+
+        //create new set to store possible substrings in
+        Set<String> substring = strSet.newInstance();
+
+        //check if str is a substring of any strings in the set
+        for (String inSet : strSet) {
+            if (inSet.contains(str)) {
+                return; //do nothing else since we can't add the string if its a substring
+            }
+        }
+
+        //add it if its not a substring
+        strSet.add(str);
+
+
+        //set up to check if any string in set is a substring of str
+        for (String inSet : strSet) {
+            if (!inSet.equals(str) && str.contains(inSet)) {
+                substring.add(inSet);
+            }
+        }
+
+        //remove the strings str contains, keeping str and all the others
+        strSet.remove(substring);
+    }
+
+    /**
+     * Removes from {@code strSet} every string that is a substring of another
+     * string in it, all at once. Equivalent to adding the strings one by one
+     * with addToSetAvoidingSubstrings, but an Aho-Corasick automaton over all
+     * of them finds every contained string in time linear in their total
+     * length instead of comparing each pair.
+     *
+     * @param strSet
+     *            set to remove substrings from
+     * @updates strSet
+     * @ensures <pre>
+     * strSet = {t: string of character
+     *            where (t is in #strSet  and
+     *                   SUPERSTRINGS(#strSet \ {t}, t) = {})
+     *           (t)}
+     * </pre>
+     */
+    public static void removeContainedStrings(Set<String> strSet) {
+        assert strSet != null : "Violation of: strSet is not null";
+
+        String[] strings = new String[strSet.size()];
+        int i = 0;
+        for (String str : strSet) {
+            strings[i] = str;
+            i++;
+        }
+        Set<String> kept = strSet.newInstance();
+        addMaximal(kept, FragmentSource.of(strings));
+        strSet.transferFrom(kept);
+    }
+
+    /**
+     * Adds to {@code strSet} every fragment of {@code fragments} that is
+     * neither a substring of another one nor equal to an earlier one. The
+     * substring checks run on the fragments where they are stored; each
+     * fragment added is then copied into a new string.
+     *
+     * @param strSet
+     *            set to add to
+     * @param fragments
+     *            candidate fragments
+     * @updates strSet
+     * @requires strSet = {}
+     * @ensures <pre>
+     * strSet = [maximal set of fragments from fragments such that
+     *           CONTAINS_NO_SUBSTRING_PAIRS(strSet)]
+     * </pre>
+     */
+    private static void addMaximal(Set<String> strSet,
+            FragmentSource fragments) {
+        boolean[] redundant = new FragmentAutomaton(fragments).redundant();
+        for (int i = 0; i < redundant.length; i++) {
+            if (!redundant[i]) {
+                strSet.add(fragments.fragment(i).toString());
+            }
+        }
+    }
+
+    /**
+     * Returns the set of all individual lines read from {@code input}, except
+     * that any line that is a substring of another is not in the returned set.
+     *
+     * @param input
+     *            source of strings, one per line
+     * @return set of lines read from {@code input}
+     * @requires input.is_open
+     * @ensures <pre>
+     * input.is_open  and  input.content = <>  and
+     * linesFromInput = [maximal set of lines from #input.content such that
+     *                   CONTAINS_NO_SUBSTRING_PAIRS(linesFromInput)]
+     * </pre>
+     */
+    public static Set<String> linesFromInput(SimpleReader input) {
+        assert input != null : "Violation of: input is not null";
+        assert input.isOpen() : "Violation of: input.is_open";
+
+        //read every line first, so substrings can be removed in one pass
+        List<String> lines = new ArrayList<>();
+        while (!input.atEOS()) {
+            lines.add(input.nextLine());
+        }
+
+        //keep only the lines that are not a substring of another line
+        Set<String> set = new FragmentSet();
+        addMaximal(set, FragmentSource.of(lines.toArray(new String[0])));
+
+        return set;
+    }
+
+    /**
+     * Returns the set of all individual lines of the file named
+     * {@code fileName}, except that any line that is a substring of another is
+     * not in the returned set. The file is memory-mapped and the substring
+     * checks run on the mapping, so the lines dropped as substrings are never
+     * copied; each byte of the file is one character (ISO-8859-1). Every line
+     * kept is still copied into its own {@code String}, since the result is a
+     * {@code Set<String>} and assemble works on strings, so for input with few
+     * redundant lines this saves little over linesFromInput. The mapping
+     * itself has no size limit, but the substring checks hold an automaton of
+     * about 50 to 75 bytes per character in memory, and take at most
+     * {@code FragmentAutomaton.MAX_TOTAL_LENGTH} (2^29 - 1) characters in
+     * all.
+     *
+     * @param fileName
+     *            name of the file, one fragment per line
+     * @return set of lines of the file
+     * @throws IllegalStateException
+     *             if the file cannot be read, or its lines total more than
+     *             2^29 - 1 characters
+     * @ensures <pre>
+     * linesFromFile = [maximal set of lines of the file such that
+     *                  CONTAINS_NO_SUBSTRING_PAIRS(linesFromFile)]
+     * </pre>
+     */
+    public static Set<String> linesFromFile(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        Set<String> set = new FragmentSet();
+        addMaximal(set, new MappedFragmentFile(fileName));
+        return set;
+    }
+
+    /**
+     * Combines strings in {@code strSet} as much as possible, leaving in it
+     * only strings that have no overlap between a suffix of one string and a
+     * prefix of another. Note: uses a "greedy approach" to assembly, hence may
+     * not result in {@code strSet} being as small a set as possible at the end.
+     * Among pairs with the same overlap, the pair whose first string, then
+     * second string, is lexicographically smallest is combined first. The
+     * overlaps are first computed on every available processor.
+     *
+     * @param strSet
+     *            set of strings
+     * @updates strSet
+     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|  and
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * CONTAINS_NO_OVERLAPPING_PAIRS(strSet)
+     * </pre>
+     */
+    public static void assemble(Set<String> strSet) {
+        assert strSet != null : "Violation of: strSet is not null";
+        /*
+         * Note: Precondition not checked!
+         */
+        assemble(strSet, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Combines strings in {@code strSet} as much as possible, leaving in it
+     * only strings that have no overlap between a suffix of one string and a
+     * prefix of another. Note: uses a "greedy approach" to assembly, hence may
+     * not result in {@code strSet} being as small a set as possible at the end.
+     * Among pairs with the same overlap, the pair whose first string, then
+     * second string, is lexicographically smallest is combined first, so the
+     * result is the same whatever {@code parallelism}. Overlaps are computed
+     * on {@code parallelism} threads, long ones first through an index of
+     * string prefixes, short ones only once no long ones are left.
+     *
+     * @param strSet
+     *            set of strings
+     * @param parallelism
+     *            number of worker threads
+     * @updates strSet
+     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet) and parallelism > 0
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|  and
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * CONTAINS_NO_OVERLAPPING_PAIRS(strSet)
+     * </pre>
+     */
+    public static void assemble(Set<String> strSet, int parallelism) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+        /*
+         * Note: Precondition not checked!
+         */
+        assemble(strSet, parallelism, 1);
+    }
+
+    /**
+     * Combines strings in {@code strSet} as much as possible along overlaps of
+     * at least {@code minOverlap} characters, leaving in it only strings with
+     * no such overlap between a suffix of one string and a prefix of another;
+     * shorter overlaps, which on large noisy inputs are mostly chance, are
+     * ignored. Uses the same greedy approach, and breaks ties the same way,
+     * as assemble(strSet). Candidate pairs are found through an index of the
+     * first {@code minOverlap} characters of each string, so pairs that share
+     * no run of {@code minOverlap} characters are never evaluated; a short
+     * {@code minOverlap} would make a poor index, so below
+     * OverlapGraphAssembler.DEFAULT_SEED_LENGTH the index uses that length,
+     * and the overlaps in between are computed only for the strings left once
+     * the longer ones have been merged.
+     *
+     * @param strSet
+     *            set of strings
+     * @param parallelism
+     *            number of worker threads
+     * @param minOverlap
+     *            shortest overlap to combine strings along
+     * @updates strSet
+     * @requires <pre>
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and  parallelism > 0  and
+     * minOverlap > 0
+     * </pre>
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|  and
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * for all t1, t2: string of character, k: integer
+     *     where (t1 /= t2  and  t1 is in strSet  and  t2 is in strSet  and
+     *            minOverlap <= k)
+     *   (not OVERLAPS(t1, t2, k))
+     * </pre>
+     */
+    public static void assemble(Set<String> strSet, int parallelism,
+            int minOverlap) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert parallelism > 0 : "Violation of: parallelism > 0";
+        assert minOverlap > 0 : "Violation of: minOverlap > 0";
+        /*
+         * Note: Precondition not checked!
+         */
+        /*
+         * Combine strings as much possible, being greedy; the overlap graph
+         * is built once and inherited through each merge
+         */
+        int seedLength = Math.max(minOverlap,
+                OverlapGraphAssembler.DEFAULT_SEED_LENGTH);
+        new OverlapGraphAssembler(strSet, parallelism, minOverlap, seedLength)
+                .assembleInto(strSet);
+    }
+
+    /**
+     * Prints the string {@code text} to {@code out}, replacing each '~' with a
+     * line separator.
+     *
+     * @param text
+     *            string to be output
+     * @param out
+     *            output stream
+     * @updates out
+     * @requires out.is_open
+     * @ensures <pre>
+     * out.is_open  and
+     * out.content = #out.content *
+     *   [text with each '~' replaced by line separator]
+     * </pre>
+     */
+    public static void printWithLineSeparators(String text, SimpleWriter out) {
+        assert text != null : "Violation of: text is not null";
+        assert out != null : "Violation of: out is not null";
+        assert out.isOpen() : "Violation of: out.is_open";
+
+        //print each run up to a '~' in one call, then the line separator
+        int start = 0;
+        int tilde = text.indexOf('~');
+        while (tilde >= 0) {
+            out.println(text.substring(start, tilde));
+            start = tilde + 1;
+            tilde = text.indexOf('~', start);
+        }
+        out.print(text.substring(start));
+    }
+
+    /**
+     * Writes the string {@code text} to {@code channel} encoded in
+     * {@code charset}, replacing each '~' with a line separator. The runs of
+     * text between separators are encoded into one large buffer, which is
+     * written to the channel only when full and at the end, so a long text
+     * takes a few large writes. Characters that {@code charset} cannot encode
+     * are written as its replacement bytes.
+     *
+     * @param text
+     *            string to be output
+     * @param channel
+     *            the channel, e.g., a {@code FileChannel} open for writing
+     * @param charset
+     *            the encoding
+     * @throws IllegalStateException
+     *             if writing to the channel fails
+     * @updates channel
+     * @requires channel is open for writing
+     * @ensures <pre>
+     * channel.content = #channel.content *
+     *   [text with each '~' replaced by line separator, encoded in charset]
+     * </pre>
+     */
+    public static void printWithLineSeparators(String text,
+            WritableByteChannel channel, Charset charset) {
+        assert text != null : "Violation of: text is not null";
+        assert channel != null : "Violation of: channel is not null";
+        assert charset != null : "Violation of: charset is not null";
+        assert channel.isOpen() : "Violation of: channel is open";
+
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        CharBuffer separator = CharBuffer.wrap(System.lineSeparator());
+        try {
+            int start = 0;
+            int tilde = text.indexOf('~');
+            while (tilde >= 0) {
+                encode(CharBuffer.wrap(text, start, tilde), encoder, buffer,
+                        channel);
+                encode(separator.duplicate(), encoder, buffer, channel);
+                start = tilde + 1;
+                tilde = text.indexOf('~', start);
+            }
+            encode(CharBuffer.wrap(text, start, text.length()), encoder,
+                    buffer, channel);
+            drain(buffer, channel);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write output", e);
+        }
+    }
+
+    /**
+     * Writes the string {@code text} to the file named {@code fileName} in
+     * ISO-8859-1, the encoding {@code linesFromFile} reads, replacing each '~'
+     * with a line separator. The file is created if missing and truncated
+     * otherwise.
+     *
+     * @param text
+     *            string to be output
+     * @param fileName
+     *            name of the file
+     * @throws IllegalStateException
+     *             if the file cannot be written
+     * @ensures <pre>
+     * [file named fileName contains text with each '~' replaced by line
+     *  separator]
+     * </pre>
+     */
+    public static void printWithLineSeparators(String text, String fileName) {
+        assert text != null : "Violation of: text is not null";
+        assert fileName != null : "Violation of: fileName is not null";
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            printWithLineSeparators(text, channel, StandardCharsets.ISO_8859_1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write " + fileName, e);
+        }
+    }
+
+    /**
+     * Encodes all of {@code chars} into {@code buffer}, writing the buffer to
+     * {@code channel} whenever it fills up.
+     *
+     * @param chars
+     *            the characters; a whole run, so it is encoded as complete
+     *            input
+     * @param encoder
+     *            the encoder
+     * @param buffer
+     *            the output buffer, in write mode
+     * @param channel
+     *            the channel
+     * @throws IOException
+     *             if writing to the channel fails
+     * @updates chars, encoder, buffer, channel
+     * @ensures chars.remaining = 0
+     */
+    private static void encode(CharBuffer chars, CharsetEncoder encoder,
+            ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, buffer, true);
+        while (result.isOverflow()) {
+            drain(buffer, channel);
+            result = encoder.encode(chars, buffer, true);
+        }
+        result = encoder.flush(buffer);
+        while (result.isOverflow()) {
+            drain(buffer, channel);
+            result = encoder.flush(buffer);
+        }
+    }
+
+    /**
+     * Writes the content of {@code buffer} to {@code channel} and empties it.
+     *
+     * @param buffer
+     *            the output buffer, in write mode
+     * @param channel
+     *            the channel
+     * @throws IOException
+     *             if writing to the channel fails
+     * @updates buffer, channel
+     * @ensures buffer.position = 0
+     */
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Given a file name (relative to the path where the application is running)
+     * that contains fragments of a single original source text, one fragment
+     * per line, outputs to stdout the result of trying to reassemble the
+     * original text from those fragments using a "greedy assembler". The
+     * result, if reassembly is complete, might be the original text; but this
+     * might not happen because a greedy assembler can make a mistake and end up
+     * predicting the fragments were from a string other than the true original
+     * source text. It can also end up with two or more fragments that are
+     * mutually non-overlapping, in which case it outputs the remaining
+     * fragments, appropriately labelled.
+     *
+     * @param args
+     *            Command-line arguments: not used
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+        /*
+         * Get input file name
+         */
+        out.print("Input file (with fragments): ");
+        String inputFileName = in.nextLine();
+        SimpleReader inFile = new SimpleReader1L(inputFileName);
+        /*
+         * Get initial fragments from input file
+         */
+        Set<String> fragments = linesFromInput(inFile);
+        /*
+         * Close inFile; we're done with it
+         */
+        inFile.close();
+        /*
+         * Assemble fragments as far as possible
+         */
+        assemble(fragments);
+        /*
+         * Output fully assembled text or remaining fragments
+         */
+        if (fragments.size() == 1) {
+            out.println();
+            String text = fragments.removeAny();
+            printWithLineSeparators(text, out);
+        } else {
+            int fragmentNumber = 0;
+            for (String str : fragments) {
+                fragmentNumber++;
+                out.println();
+                out.println("--------------------");
+                out.println("  -- Fragment #" + fragmentNumber + ": --");
+                out.println("--------------------");
+                printWithLineSeparators(str, out);
+            }
+        }
+        /*
+         * Close input and output streams
+         */
+        in.close();
+        out.close();
+    }
+
+}
@@ -1,48 +1,591 @@
-import static org.junit.Assert.assertEquals;
-
-import org.junit.Test;
-
-import components.simplewriter.SimpleWriter;
-import components.simplewriter.SimpleWriter1L;
-
-/**
- * @author Selin Kirbas
- *
- */
-public class StringReassemblyTest {
-    /**
-     * Tests of combination.
-     */
-    @Test
-    public void combination() {
-
-        String str1 = "abcde";
-        String str2 = "defg";
-        int overlap = 2;
-
-        String result = StringReassembly.combination(str1, str2, overlap);
-        assertEquals("abcdefg", result);
-    }
-
-    public void combination2() {
-
-        String str1 = "abcde";
-        String str2 = "fg";
-        int overlap = 0;
-
-        String result = StringReassembly.combination(str1, str2, overlap);
-        assertEquals("abcdefg", result);
-    }
-
-    /**
-     * Tests of printWithLineSeparators.
-     */
-    @Test
-    public void printWithLineSeparators() {
-        SimpleWriter out = new SimpleWriter1L();
-        String text = "The quick brown ~ fox jumps over ~ the lazy dog.";
-
-        StringReassembly.printWithLineSeparators(text, out);
-    }
-
-}
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * @author Selin Kirbas
+ *
+ */
+public class StringReassemblyTest {
+    /**
+     * Tests of overlap.
+     */
+    @Test
+    public void overlap() {
+        assertEquals(3, StringReassembly.overlap("abcde", "cdefg"));
+        assertEquals(0, StringReassembly.overlap("abc", "xyz"));
+        assertEquals(4, StringReassembly.overlap("xabab", "ababy"));
+    }
+
+    @Test
+    public void overlap_MatchesBruteForce() {
+        Random random = new Random(3);
+        int[] prefix = new int[16];
+        for (int trial = 0; trial < 2000; trial++) {
+            String str1 = randomString(random, 1 + random.nextInt(12));
+            String str2 = randomString(random, 1 + random.nextInt(12));
+            if (!str1.contains(str2) && !str2.contains(str1)) {
+                int expected = Math.min(str1.length(), str2.length());
+                while (!str1.regionMatches(str1.length() - expected, str2, 0,
+                        expected)) {
+                    expected--;
+                }
+                StringReassembly.prefixFunction(str2, prefix);
+                assertEquals(expected,
+                        StringReassembly.overlap(str1, str2, prefix));
+                assertEquals(expected, StringReassembly.overlap(str1, str2));
+            }
+        }
+    }
+
+    /**
+     * Returns a random string of {@code length} characters from {a, b}.
+     *
+     * @param random
+     *            source of randomness
+     * @param length
+     *            length of the string
+     * @return the string
+     */
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < length; j++) {
+            sb.append((char) ('a' + random.nextInt(2)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tests of combination.
+     */
+    @Test
+    public void combination() {
+
+        String str1 = "abcde";
+        String str2 = "defg";
+        int overlap = 2;
+
+        String result = StringReassembly.combination(str1, str2, overlap);
+        assertEquals("abcdefg", result);
+    }
+
+    public void combination2() {
+
+        String str1 = "abcde";
+        String str2 = "fg";
+        int overlap = 0;
+
+        String result = StringReassembly.combination(str1, str2, overlap);
+        assertEquals("abcdefg", result);
+    }
+
+    /**
+     * Tests of printWithLineSeparators.
+     */
+    @Test
+    public void printWithLineSeparators() throws IOException {
+        File file = File.createTempFile("output", ".txt");
+        file.deleteOnExit();
+        SimpleWriter out = new SimpleWriter1L(file.getPath());
+        String text = "The quick brown ~ fox jumps over ~~ the lazy dog.";
+
+        StringReassembly.printWithLineSeparators(text, out);
+        out.close();
+        SimpleReader in = new SimpleReader1L(file.getPath());
+        List<String> lines = new ArrayList<>();
+        while (!in.atEOS()) {
+            lines.add(in.nextLine());
+        }
+        in.close();
+
+        assertEquals(4, lines.size());
+        assertEquals("The quick brown ", lines.get(0));
+        assertEquals(" fox jumps over ", lines.get(1));
+        assertEquals("", lines.get(2));
+        assertEquals(" the lazy dog.", lines.get(3));
+    }
+
+    @Test
+    public void printWithLineSeparators_ToChannel() throws IOException {
+        //longer than the output buffer, so it is written in several parts
+        Random random = new Random(25);
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            String run = randomString(random, random.nextInt(12));
+            text.append(run).append('~');
+            expected.append(run).append(System.lineSeparator());
+        }
+        text.append("caf\u00e9");
+        expected.append("caf\u00e9");
+        File file = File.createTempFile("output", ".txt");
+        file.deleteOnExit();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE)) {
+            StringReassembly.printWithLineSeparators(text.toString(),
+                    channel, StandardCharsets.UTF_8);
+        }
+
+        assertEquals(expected.toString(), new String(
+                Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void printWithLineSeparators_ToFile() throws IOException {
+        File file = File.createTempFile("output", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "longer old content to be truncated"
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        StringReassembly.printWithLineSeparators("~ab~cd", file.getPath());
+
+        String sep = System.lineSeparator();
+        assertEquals(sep + "ab" + sep + "cd",
+                new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Tests of addToSetAvoidingSubstrings.
+     */
+    @Test
+    public void addToSetAvoidingSubstrings_RemovesContained() {
+        Set<String> strSet = new Set1L<>();
+        strSet.add("bc");
+        strSet.add("xyz");
+        StringReassembly.addToSetAvoidingSubstrings(strSet, "abcd");
+        StringReassembly.addToSetAvoidingSubstrings(strSet, "yz");
+
+        assertEquals(2, strSet.size());
+        assertEquals(true, strSet.contains("abcd"));
+        assertEquals(true, strSet.contains("xyz"));
+    }
+
+    /**
+     * Tests of removeContainedStrings.
+     */
+    @Test
+    public void removeContainedStrings() {
+        Set<String> strSet = new Set1L<>();
+        strSet.add("abc");
+        strSet.add("bc");
+        strSet.add("xabcy");
+        strSet.add("q");
+        strSet.add("");
+        strSet.add("cyq");
+
+        StringReassembly.removeContainedStrings(strSet);
+        assertEquals(2, strSet.size());
+        assertEquals(true, strSet.contains("xabcy"));
+        assertEquals(true, strSet.contains("cyq"));
+    }
+
+    @Test
+    public void removeContainedStrings_MatchesOneByOne() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 50; trial++) {
+            Set<String> bulk = new Set1L<>();
+            Set<String> oneByOne = new Set1L<>();
+            for (int i = 0; i < 30; i++) {
+                StringBuilder sb = new StringBuilder();
+                int length = 1 + random.nextInt(8);
+                for (int j = 0; j < length; j++) {
+                    sb.append((char) ('a' + random.nextInt(3)));
+                }
+                String str = sb.toString();
+                if (!bulk.contains(str)) {
+                    bulk.add(str);
+                }
+                StringReassembly.addToSetAvoidingSubstrings(oneByOne, str);
+            }
+            StringReassembly.removeContainedStrings(bulk);
+
+            assertEquals(oneByOne.size(), bulk.size());
+            for (String str : oneByOne) {
+                assertEquals(true, bulk.contains(str));
+            }
+        }
+    }
+
+    @Test
+    public void removeContainedStrings_TooLongInputThrows() {
+        //two fragments of 2^28 characters; never read, only measured
+        FragmentSource huge = new FragmentSource() {
+            @Override
+            public int size() {
+                return 2;
+            }
+
+            @Override
+            public int length(int i) {
+                return 1 << 28;
+            }
+
+            @Override
+            public char charAt(int i, int j) {
+                return 'a';
+            }
+
+            @Override
+            public CharSequence fragment(int i) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        boolean thrown = false;
+        try {
+            new FragmentAutomaton(huge);
+        } catch (IllegalStateException e) {
+            thrown = true;
+        }
+        assertEquals(true, thrown);
+    }
+
+    /**
+     * Returns a new temporary file holding {@code contents}, one byte per
+     * character, deleted when the virtual machine exits.
+     *
+     * @param contents
+     *            the contents, in ISO-8859-1
+     * @return the file
+     * @throws IOException
+     *             if the file cannot be created or written
+     */
+    private static File fragmentFile(String contents) throws IOException {
+        File file = File.createTempFile("fragments", ".txt");
+        //a mapped file cannot be deleted on some platforms until unmapped
+        file.deleteOnExit();
+        Files.write(file.toPath(),
+                contents.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    /**
+     * Tests of linesFromFile.
+     */
+    @Test
+    public void linesFromFile_MatchesLinesFromInput() throws IOException {
+        File file = fragmentFile("abcd\r\nbc\nxyz\n\nyzq\nabcd\nzq");
+        Set<String> mapped = StringReassembly
+                .linesFromFile(file.getPath());
+        SimpleReader in = new SimpleReader1L(file.getPath());
+        Set<String> read = StringReassembly.linesFromInput(in);
+        in.close();
+
+        assertEquals(3, mapped.size());
+        assertEquals(true, mapped.contains("abcd"));
+        assertEquals(true, mapped.contains("xyz"));
+        assertEquals(true, mapped.contains("yzq"));
+        assertEquals(read.size(), mapped.size());
+        for (String str : read) {
+            assertEquals(true, mapped.contains(str));
+        }
+    }
+
+    @Test
+    public void linesFromFile_LoneCarriageReturnEndsLine() throws IOException {
+        File file = fragmentFile("abc\rdef\r\nghi\r\rjkl\r");
+        Set<String> mapped = StringReassembly
+                .linesFromFile(file.getPath());
+        SimpleReader in = new SimpleReader1L(file.getPath());
+        Set<String> read = StringReassembly.linesFromInput(in);
+        in.close();
+
+        assertEquals(4, mapped.size());
+        assertEquals(true, mapped.contains("abc"));
+        assertEquals(true, mapped.contains("def"));
+        assertEquals(true, mapped.contains("ghi"));
+        assertEquals(true, mapped.contains("jkl"));
+        assertEquals(read.size(), mapped.size());
+        for (String str : read) {
+            assertEquals(true, mapped.contains(str));
+        }
+    }
+
+    @Test
+    public void afterLastLineBreak() {
+        ByteBuffer buffer = ByteBuffer.wrap("ab\ncd\r\nef\rgh\r"
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(10, MappedFragmentFile.afterLastLineBreak(buffer, 12));
+        assertEquals(7, MappedFragmentFile.afterLastLineBreak(buffer, 9));
+        //a "\r" that may be followed by "\n" is not yet a whole line break
+        assertEquals(10, MappedFragmentFile.afterLastLineBreak(buffer, 13));
+        assertEquals(7, MappedFragmentFile.afterLastLineBreak(buffer, 10));
+        assertEquals(3, MappedFragmentFile.afterLastLineBreak(buffer, 6));
+        assertEquals(0, MappedFragmentFile.afterLastLineBreak(buffer, 2));
+    }
+
+    @Test
+    public void overlap_OnMappedFragments() throws IOException {
+        File file = fragmentFile("xabab\nababy\n");
+        MappedFragmentFile fragments = new MappedFragmentFile(
+                file.getPath());
+        assertEquals(2, fragments.size());
+        CharSequence str1 = fragments.fragment(0);
+        CharSequence str2 = fragments.fragment(1);
+        int[] prefix = new int[str2.length()];
+        StringReassembly.prefixFunction(str2, prefix);
+
+        assertEquals(4, StringReassembly.overlap(str1, str2, prefix));
+        assertEquals("ababy", str2.toString());
+    }
+
+    /**
+     * Tests of assemble.
+     */
+    @Test
+    public void assemble_Chain() {
+        Set<String> strSet = new Set1L<>();
+        strSet.add("efghij");
+        strSet.add("abcde");
+        strSet.add("cdefg");
+
+        StringReassembly.assemble(strSet);
+        assertEquals(1, strSet.size());
+        assertEquals(true, strSet.contains("abcdefghij"));
+    }
+
+    @Test
+    public void assemble_NoOverlap() {
+        Set<String> strSet = new Set1L<>();
+        strSet.add("abc");
+        strSet.add("xyz");
+
+        StringReassembly.assemble(strSet);
+        assertEquals(2, strSet.size());
+        assertEquals(true, strSet.contains("abc"));
+        assertEquals(true, strSet.contains("xyz"));
+    }
+
+    @Test
+    public void assemble_MatchesRepeatedBestPair() {
+        Random random = new Random(5);
+        for (int trial = 0; trial < 30; trial++) {
+            Set<String> strSet = randomFragments(random, 60, 12, 4);
+            List<String> expected = greedyByRepeatedScan(strSet, 1);
+
+            StringReassembly.assemble(strSet);
+            assertSameStrings(expected, strSet);
+        }
+    }
+
+    @Test
+    public void assemble_SameForAnyParallelism() {
+        Random random = new Random(9);
+        Set<String> sequential = randomFragments(random, 400, 80, 8);
+        Set<String> parallel = sequential.newInstance();
+        for (String str : sequential) {
+            parallel.add(str);
+        }
+
+        StringReassembly.assemble(sequential, 1);
+        StringReassembly.assemble(parallel, 3);
+        assertEquals(sequential.size(), parallel.size());
+        for (String str : sequential) {
+            assertEquals(true, parallel.contains(str));
+        }
+    }
+
+    @Test
+    public void assemble_SeededMatchesRepeatedBestPair() {
+        Random random = new Random(21);
+        for (int trial = 0; trial < 30; trial++) {
+            Set<String> strSet = randomFragments(random, 200, 25, 6);
+            List<String> expected = greedyByRepeatedScan(strSet, 1);
+
+            new OverlapGraphAssembler(strSet, 1, 1, 3).assembleInto(strSet);
+            assertSameStrings(expected, strSet);
+        }
+    }
+
+    @Test
+    public void assemble_MinOverlap() {
+        Set<String> strSet = new Set1L<>();
+        strSet.add("abcde");
+        strSet.add("cdefg");
+        strSet.add("xyzab");
+
+        StringReassembly.assemble(strSet, 1, 3);
+        assertEquals(2, strSet.size());
+        assertEquals(true, strSet.contains("abcdefg"));
+        assertEquals(true, strSet.contains("xyzab"));
+    }
+
+    @Test
+    public void assemble_MinOverlapMatchesRepeatedBestPair() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 30; trial++) {
+            Set<String> strSet = randomFragments(random, 200, 25, 6);
+            List<String> expected = greedyByRepeatedScan(strSet, 4);
+
+            StringReassembly.assemble(strSet, 2, 4);
+            assertSameStrings(expected, strSet);
+        }
+    }
+
+    /**
+     * Returns up to {@code count} distinct random substrings of a random
+     * string of {@code textLength} characters from {a, b}, none of them
+     * contained in another.
+     *
+     * @param random
+     *            source of randomness
+     * @param textLength
+     *            length of the string the fragments are cut from
+     * @param count
+     *            number of substrings to cut
+     * @param minLength
+     *            length of the shortest substring
+     * @return the fragments
+     * @requires 0 < minLength < textLength
+     */
+    private static Set<String> randomFragments(Random random, int textLength,
+            int count, int minLength) {
+        String text = randomString(random, textLength);
+        Set<String> strSet = new Set1L<>();
+        for (int i = 0; i < count; i++) {
+            int start = random.nextInt(textLength - minLength);
+            String str = text.substring(start, start + minLength
+                    + random.nextInt(textLength - start - minLength + 1));
+            if (!strSet.contains(str)) {
+                strSet.add(str);
+            }
+        }
+        StringReassembly.removeContainedStrings(strSet);
+        return strSet;
+    }
+
+    /**
+     * Checks that {@code actual} holds exactly the strings in
+     * {@code expected}.
+     *
+     * @param expected
+     *            the strings expected, without duplicates
+     * @param actual
+     *            the strings found
+     */
+    private static void assertSameStrings(List<String> expected,
+            Set<String> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (String str : expected) {
+            assertEquals(true, actual.contains(str));
+        }
+    }
+
+    /**
+     * Returns the strings left by greedy assembly of {@code strSet} that
+     * rescans every pair after each merge, breaking ties between equal
+     * overlaps as assemble does.
+     *
+     * @param strSet
+     *            strings to assemble; not changed
+     * @param minOverlap
+     *            shortest overlap to combine strings along
+     * @return the assembled strings
+     */
+    private static List<String> greedyByRepeatedScan(Set<String> strSet,
+            int minOverlap) {
+        List<String> strings = new ArrayList<>();
+        for (String str : strSet) {
+            strings.add(str);
+        }
+        boolean done = false;
+        while (!done) {
+            String best0 = null;
+            String best1 = null;
+            int best = 0;
+            for (String str0 : strings) {
+                for (String str1 : strings) {
+                    if (str0 != str1) {
+                        int k = StringReassembly.overlap(str0, str1);
+                        boolean better = k > best || (k == best && k > 0
+                                && (str0.compareTo(best0) < 0
+                                        || (str0.equals(best0) && str1
+                                                .compareTo(best1) < 0)));
+                        if (better) {
+                            best = k;
+                            best0 = str0;
+                            best1 = str1;
+                        }
+                    }
+                }
+            }
+            if (best < minOverlap) {
+                done = true;
+            } else {
+                strings.remove(best0);
+                strings.remove(best1);
+                strings.add(StringReassembly.combination(best0, best1, best));
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Tests of FragmentSet.
+     */
+    @Test
+    public void fragmentSet_MatchesHashSet() {
+        Random random = new Random(13);
+        FragmentSet set = new FragmentSet();
+        HashSet<String> expected = new HashSet<>();
+        for (int step = 0; step < 20000; step++) {
+            String str = randomString(random, 1 + random.nextInt(4));
+            int op = random.nextInt(3);
+            if (op == 0 && !expected.contains(str)) {
+                set.add(str);
+                expected.add(str);
+            } else if (op == 1 && expected.contains(str)) {
+                assertEquals(str, set.remove(str));
+                expected.remove(str);
+            } else if (op == 2 && expected.size() > 0) {
+                String any = set.removeAny();
+                assertEquals(true, expected.remove(any));
+            }
+            assertEquals(expected.size(), set.size());
+            assertEquals(expected.contains(str), set.contains(str));
+        }
+        int seen = 0;
+        for (String str : set) {
+            assertEquals(true, expected.contains(str));
+            seen++;
+        }
+        assertEquals(expected.size(), seen);
+    }
+
+    @Test
+    public void fragmentSet_TransferFrom() {
+        FragmentSet source = new FragmentSet();
+        source.add("abc");
+        source.add("xyz");
+        Set<String> target = source.newInstance();
+        target.add("q");
+
+        target.transferFrom(source);
+        assertEquals(0, source.size());
+        assertEquals(2, target.size());
+        assertEquals(true, target.contains("abc"));
+        assertEquals(false, target.contains("q"));
+    }
+
+}